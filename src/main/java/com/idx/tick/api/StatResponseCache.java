@@ -0,0 +1,91 @@
+package com.idx.tick.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.idx.tick.model.Stat;
+import com.idx.tick.model.dto.StatDto;
+import com.idx.tick.service.InstrumentStatListener;
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  StatResponseCache : keeps the serialized JSON body of the latest stat version of every instrument.
+ *  Entries are dropped by the aggregation engine through {@link InstrumentStatListener} when a stat changes value
+ *  or the instrument is evicted, so repeated reads of an unchanged instrument skip mapping and JSON encoding.
+ */
+@Slf4j
+@Component
+public class StatResponseCache implements InstrumentStatListener {
+
+    static final String EMPTY_STAT_ETAG = "\"0\"";
+
+    // Versions restart with the application, so ETags carry the start time to stay unique across restarts
+    private final String etagPrefix = "\"" + Long.toHexString(System.currentTimeMillis()) + "-";
+    private final Map<String, CachedBody> bodies = new ConcurrentHashMap<>();
+    private volatile byte[] emptyStatBody;
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    /**
+     * @return serialized StatDto for the given stat, taken from the cache if the stat version was already serialized
+     */
+    public byte[] getBody(String instrument, Stat stat) throws JsonProcessingException {
+        CachedBody cachedBody = bodies.get(instrument);
+        if (cachedBody != null && cachedBody.version == stat.getVersion()) return cachedBody.body;
+
+        log.debug("Serializing stat version {} for instrument {}", stat.getVersion(), instrument);
+        CachedBody newBody = new CachedBody(stat.getVersion(), objectMapper.writeValueAsBytes(modelMapper.map(stat, StatDto.class)));
+        // Never let a slow reader replace the body of a newer version
+        bodies.merge(instrument, newBody, (current, candidate) -> candidate.version > current.version ? candidate : current);
+        return newBody.body;
+    }
+
+    /**
+     * @return serialized empty StatDto, returned for instruments without ticks in the current sliding time interval
+     */
+    public byte[] getEmptyBody() throws JsonProcessingException {
+        byte[] body = emptyStatBody;
+        if (body == null) {
+            body = objectMapper.writeValueAsBytes(new StatDto());
+            emptyStatBody = body;
+        }
+        return body;
+    }
+
+    public String getETag(Stat stat) {
+        return etagPrefix + stat.getVersion() + "\"";
+    }
+
+
+    @Override
+    public void onStatChanged(String instrument, Stat newStat) {
+        bodies.remove(instrument);
+    }
+
+    @Override
+    public void onInstrumentRemoved(String instrument) {
+        bodies.remove(instrument);
+    }
+
+
+    private static final class CachedBody {
+
+        private final long version;
+        private final byte[] body;
+
+        private CachedBody(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
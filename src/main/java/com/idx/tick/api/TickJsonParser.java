@@ -0,0 +1,524 @@
+package com.idx.tick.api;
+
+import com.idx.tick.exception.TickPayloadTooLargeException;
+import com.idx.tick.model.TickBatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *  TickJsonParser : hand written streaming parser for the fixed {instrument, price, timestamp} tick schema.
+ *  The request body is read into a per-thread buffer and parsed straight into a per-thread {@link TickBatch},
+ *  so no Jackson databinding, reflection or boxing happens on the publish path.
+ *  Unknown fields are skipped, quoted numbers and fractional timestamps (truncated) are accepted,
+ *  like the default Jackson configuration does.
+ *  Malformed input is reported as an IllegalArgumentException, a body larger than tick.request.max.bytes
+ *  as a TickPayloadTooLargeException. Buffers grown by a large body are dropped on {@link #release()}.
+ */
+@Component
+public class TickJsonParser {
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_BATCH_CAPACITY = 1024;
+    private static final int DEFAULT_MAX_BODY_BYTES = 8 * 1024 * 1024;
+    private static final int INSTRUMENT_CACHE_SIZE = 1024;
+    private static final int MAX_NESTING_DEPTH = 64;
+    private static final int MAX_FAST_PATH_DIGITS = 15;
+
+    private static final byte[] INSTRUMENT_FIELD = "instrument".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRICE_FIELD = "price".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_FIELD = "timestamp".getBytes(StandardCharsets.US_ASCII);
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ThreadLocal<ParseContext> parseContexts = ThreadLocal.withInitial(ParseContext::new);
+
+    @Value("${tick.request.max.bytes:" + DEFAULT_MAX_BODY_BYTES + "}")
+    private int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+
+    /**
+     * Parses a body holding a single tick object.
+     * @param body request body
+     * @return the calling thread's reusable batch holding exactly one tick; only valid until the next parse on this thread
+     * @throws IllegalArgumentException if the body is not a well formed tick
+     * @throws TickPayloadTooLargeException if the body is larger than the configured limit
+     */
+    public TickBatch parseTick(InputStream body) throws IOException {
+        ParseContext ctx = prepare(body);
+        ctx.skipWhitespace();
+        ctx.parseTickObject();
+        ctx.expectEnd();
+        return ctx.batch;
+    }
+
+    /**
+     * Parses a body holding a JSON array of tick objects.
+     * @param body request body
+     * @return the calling thread's reusable batch holding the ticks; only valid until the next parse on this thread
+     * @throws IllegalArgumentException if the body is not a well formed array of ticks
+     * @throws TickPayloadTooLargeException if the body is larger than the configured limit
+     */
+    public TickBatch parseTicks(InputStream body) throws IOException {
+        ParseContext ctx = prepare(body);
+        ctx.skipWhitespace();
+        ctx.expect('[');
+        ctx.skipWhitespace();
+        if (ctx.peek() == ']') {
+            ctx.pos++;
+        } else {
+            while (true) {
+                ctx.parseTickObject();
+                ctx.skipWhitespace();
+                byte b = ctx.next();
+                if (b == ']') break;
+                if (b != ',') throw ctx.error("expected ',' or ']'");
+                ctx.skipWhitespace();
+            }
+        }
+        ctx.expectEnd();
+        return ctx.batch;
+    }
+
+
+    /**
+     * Drops the buffers of the calling thread which grew beyond their usual size, so that a single large request
+     * does not pin memory on every thread which served one. The last parsed batch is invalid afterwards
+     */
+    public void release() {
+        ParseContext ctx = parseContexts.get();
+        if (ctx.buffer.length > MAX_RETAINED_BUFFER_SIZE) ctx.buffer = new byte[INITIAL_BUFFER_SIZE];
+        ctx.batch.release(MAX_RETAINED_BATCH_CAPACITY);
+    }
+
+
+    private ParseContext prepare(InputStream body) throws IOException {
+        ParseContext ctx = parseContexts.get();
+        ctx.batch.clear();
+        ctx.read(body, maxBodyBytes);
+        return ctx;
+    }
+
+
+    private static final class ParseContext {
+
+        private final TickBatch batch = new TickBatch();
+        private final byte[][] instrumentKeys = new byte[INSTRUMENT_CACHE_SIZE][];
+        private final String[] instrumentValues = new String[INSTRUMENT_CACHE_SIZE];
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int length;
+        private int pos;
+
+
+        private void read(InputStream body, int maxBodyBytes) throws IOException {
+            int len = 0;
+            if (body != null) {
+                int n;
+                while ((n = body.read(buffer, len, buffer.length - len)) != -1) {
+                    len += n;
+                    if (len > maxBodyBytes) throw new TickPayloadTooLargeException(maxBodyBytes);
+                    // Grown to at most one byte over the limit, which tells an oversized body apart
+                    if (len == buffer.length) buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length << 1, maxBodyBytes + 1L));
+                }
+            }
+            length = len;
+            pos = 0;
+            // Tolerate a UTF-8 byte order mark
+            if (len >= 3 && buffer[0] == (byte) 0xEF && buffer[1] == (byte) 0xBB && buffer[2] == (byte) 0xBF) pos = 3;
+        }
+
+
+        private void parseTickObject() {
+            String instrument = null;
+            double price = 0.0;
+            long timestamp = 0L;
+            boolean hasPrice = false;
+            boolean hasTimestamp = false;
+
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    expect('"');
+                    int keyStart = pos;
+                    boolean escaped = scanString();
+                    int keyEnd = pos - 1;
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+
+                    if (isField(INSTRUMENT_FIELD, keyStart, keyEnd, escaped)) {
+                        instrument = parseNullableString();
+                    } else if (isField(PRICE_FIELD, keyStart, keyEnd, escaped)) {
+                        hasPrice = !skipNull();
+                        if (hasPrice) price = peek() == '"' ? parseQuotedDouble() : parseDouble();
+                    } else if (isField(TIMESTAMP_FIELD, keyStart, keyEnd, escaped)) {
+                        hasTimestamp = !skipNull();
+                        if (hasTimestamp) timestamp = peek() == '"' ? parseQuotedLong() : parseLong();
+                    } else {
+                        skipValue(0);
+                    }
+
+                    skipWhitespace();
+                    byte b = next();
+                    if (b == '}') break;
+                    if (b != ',') throw error("expected ',' or '}'");
+                    skipWhitespace();
+                }
+            }
+
+            if (!StringUtils.hasText(instrument)) throw new IllegalArgumentException("Instrument passed is either null or empty");
+            if (!hasPrice) throw new IllegalArgumentException("Tick price is missing");
+            if (!hasTimestamp) throw new IllegalArgumentException("Tick timestamp is missing");
+            batch.add(instrument, price, timestamp);
+        }
+
+
+        private boolean isField(byte[] field, int start, int end, boolean escaped) {
+            if (escaped) return new String(field, StandardCharsets.US_ASCII).equals(decodeString(start, end));
+            if (end - start != field.length) return false;
+            for (int i = 0; i < field.length; i++) {
+                if (buffer[start + i] != field[i]) return false;
+            }
+            return true;
+        }
+
+
+        private String parseNullableString() {
+            if (skipNull()) return null;
+            expect('"');
+            int start = pos;
+            boolean escaped = scanString();
+            int end = pos - 1;
+            if (escaped) return decodeString(start, end);
+
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                if (buffer[i] < 0) return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+                hash = 31 * hash + buffer[i];
+            }
+            return cachedInstrument(start, end, hash);
+        }
+
+
+        /**
+         * Instrument names repeat heavily, so plain ASCII names are interned in a small per-thread cache
+         * keyed by their raw bytes. This keeps the steady state of the publish path free of String allocation.
+         */
+        private String cachedInstrument(int start, int end, int hash) {
+            int slot = (hash ^ (hash >>> 16)) & (INSTRUMENT_CACHE_SIZE - 1);
+            byte[] key = instrumentKeys[slot];
+            int len = end - start;
+            if (key != null && key.length == len) {
+                int i = 0;
+                while (i < len && key[i] == buffer[start + i]) i++;
+                if (i == len) return instrumentValues[slot];
+            }
+            String value = new String(buffer, start, len, StandardCharsets.US_ASCII);
+            instrumentKeys[slot] = Arrays.copyOfRange(buffer, start, end);
+            instrumentValues[slot] = value;
+            return value;
+        }
+
+
+        /**
+         * Advances past the closing quote of a string whose opening quote was already consumed.
+         * @return true if the string holds escape sequences
+         */
+        private boolean scanString() {
+            boolean escaped = false;
+            while (pos < length) {
+                byte b = buffer[pos++];
+                if (b == '"') return escaped;
+                if (b == '\\') {
+                    escaped = true;
+                    if (pos >= length) break;
+                    pos++;
+                } else if (b >= 0 && b < 0x20) {
+                    throw error("unescaped control character in string");
+                }
+            }
+            throw error("unterminated string");
+        }
+
+
+        private String decodeString(int start, int end) {
+            String raw = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+            StringBuilder sb = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = raw.charAt(++i);
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (i + 4 >= raw.length()) throw error("truncated unicode escape");
+                        try {
+                            sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException nfe) {
+                            throw error("invalid unicode escape");
+                        }
+                        i += 4;
+                        break;
+                    default: throw error("invalid escape sequence");
+                }
+            }
+            return sb.toString();
+        }
+
+
+        /**
+         * Parses a JSON number as a double. Numbers with at most 15 significant digits and a small decimal
+         * exponent are converted exactly with a single multiplication or division; anything else falls back
+         * to Double.parseDouble so results always match the JDK.
+         */
+        private double parseDouble() {
+            int start = pos;
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                pos++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            int intStart = pos;
+            while (pos < length && isDigit(buffer[pos])) {
+                mantissa = mantissa * 10 + (buffer[pos++] - '0');
+                if (mantissa != 0) digits++;
+                if (digits > MAX_FAST_PATH_DIGITS) return parseDoubleSlow(start);
+            }
+            if (pos == intStart) throw error("invalid number");
+
+            if (pos < length && buffer[pos] == '.') {
+                pos++;
+                int fractionStart = pos;
+                while (pos < length && isDigit(buffer[pos])) {
+                    mantissa = mantissa * 10 + (buffer[pos++] - '0');
+                    fractionDigits++;
+                    if (mantissa != 0) digits++;
+                    if (digits > MAX_FAST_PATH_DIGITS) return parseDoubleSlow(start);
+                }
+                if (pos == fractionStart) throw error("invalid number");
+            }
+
+            int exponent = 0;
+            if (pos < length && (buffer[pos] == 'e' || buffer[pos] == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < length && (buffer[pos] == '-' || buffer[pos] == '+')) negativeExponent = buffer[pos++] == '-';
+                int exponentStart = pos;
+                while (pos < length && isDigit(buffer[pos])) {
+                    if (exponent > 9999) return parseDoubleSlow(start);
+                    exponent = exponent * 10 + (buffer[pos++] - '0');
+                }
+                if (pos == exponentStart) throw error("invalid number");
+                if (negativeExponent) exponent = -exponent;
+            }
+
+            int scale = exponent - fractionDigits;
+            if (scale < -22 || scale > 22) return parseDoubleSlow(start);
+            double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+
+
+        private double parseDoubleSlow(int start) {
+            pos = start;
+            if (peek() == '-') pos++;
+            while (pos < length && isNumberChar(buffer[pos])) pos++;
+            try {
+                return Double.parseDouble(new String(buffer, start, pos - start, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException nfe) {
+                throw error("invalid number");
+            }
+        }
+
+
+        private String parseQuotedNumber() {
+            expect('"');
+            int start = pos;
+            boolean escaped = scanString();
+            int end = pos - 1;
+            return (escaped ? decodeString(start, end) : new String(buffer, start, end - start, StandardCharsets.UTF_8)).trim();
+        }
+
+        private double parseQuotedDouble() {
+            String number = parseQuotedNumber();
+            try {
+                return Double.parseDouble(number);
+            } catch (NumberFormatException nfe) {
+                throw error("invalid number");
+            }
+        }
+
+        private long parseQuotedLong() {
+            String number = parseQuotedNumber();
+            try {
+                return Long.parseLong(number);
+            } catch (NumberFormatException nfe) {
+                throw error("invalid integer");
+            }
+        }
+
+
+        /**
+         * Parses a JSON number as a long. Fractional numbers are truncated towards zero
+         */
+        private long parseLong() {
+            int numberStart = pos;
+            boolean negative = false;
+            if (peek() == '-') {
+                negative = true;
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            while (pos < length && isDigit(buffer[pos])) {
+                int digit = buffer[pos++] - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10) throw error("integer out of range");
+                value = value * 10 + digit;
+            }
+            if (pos == start) throw error("invalid integer");
+            if (pos < length && (buffer[pos] == '.' || buffer[pos] == 'e' || buffer[pos] == 'E')) {
+                double fractional = parseDoubleSlow(numberStart);
+                if (! (fractional >= Long.MIN_VALUE && fractional < Long.MAX_VALUE)) throw error("integer out of range");
+                return (long) fractional;
+            }
+            return negative ? -value : value;
+        }
+
+
+        private void skipValue(int depth) {
+            if (depth > MAX_NESTING_DEPTH) throw error("nesting too deep");
+            byte b = peek();
+            switch (b) {
+                case '"':
+                    pos++;
+                    scanString();
+                    break;
+                case '{':
+                    pos++;
+                    skipWhitespace();
+                    if (peek() == '}') {
+                        pos++;
+                        break;
+                    }
+                    while (true) {
+                        expect('"');
+                        scanString();
+                        skipWhitespace();
+                        expect(':');
+                        skipWhitespace();
+                        skipValue(depth + 1);
+                        skipWhitespace();
+                        byte c = next();
+                        if (c == '}') break;
+                        if (c != ',') throw error("expected ',' or '}'");
+                        skipWhitespace();
+                    }
+                    break;
+                case '[':
+                    pos++;
+                    skipWhitespace();
+                    if (peek() == ']') {
+                        pos++;
+                        break;
+                    }
+                    while (true) {
+                        skipValue(depth + 1);
+                        skipWhitespace();
+                        byte c = next();
+                        if (c == ']') break;
+                        if (c != ',') throw error("expected ',' or ']'");
+                        skipWhitespace();
+                    }
+                    break;
+                case 't':
+                    expectLiteral("true");
+                    break;
+                case 'f':
+                    expectLiteral("false");
+                    break;
+                case 'n':
+                    expectLiteral("null");
+                    break;
+                default:
+                    parseDoubleSlow(pos);
+            }
+        }
+
+
+        private boolean skipNull() {
+            if (peek() != 'n') return false;
+            expectLiteral("null");
+            return true;
+        }
+
+        private void expectLiteral(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (pos >= length || buffer[pos++] != literal.charAt(i)) throw error("invalid literal");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < length) {
+                byte b = buffer[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+                pos++;
+            }
+        }
+
+        private void expect(char c) {
+            if (next() != c) throw error("expected '" + c + "'");
+        }
+
+        private void expectEnd() {
+            skipWhitespace();
+            if (pos != length) throw error("unexpected trailing content");
+        }
+
+        private byte peek() {
+            if (pos >= length) throw error("unexpected end of input");
+            return buffer[pos];
+        }
+
+        private byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        private IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("Malformed tick JSON at offset " + pos + ": " + reason);
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static boolean isNumberChar(byte b) {
+            return isDigit(b) || b == '.' || b == 'e' || b == 'E' || b == '-' || b == '+';
+        }
+    }
+}
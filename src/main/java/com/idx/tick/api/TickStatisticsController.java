@@ -1,26 +1,41 @@
 package com.idx.tick.api;
 
 
-import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.exception.TickPayloadTooLargeException;
 import com.idx.tick.model.Stat;
-import com.idx.tick.model.Tick;
+import com.idx.tick.model.TickBatch;
+import com.idx.tick.model.dto.CandleDto;
+import com.idx.tick.model.dto.InstrumentStatDto;
 import com.idx.tick.model.dto.StatDto;
+import com.idx.tick.service.InstrumentGroupService;
+import com.idx.tick.service.InstrumentRankingService;
 import com.idx.tick.service.PriceAggregationService;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  *  TickStatisticsController : REST API that provides the following functionalities -
- *  1. Publish ticks which are not older than allowed duration
+ *  1. Publish ticks (one at a time or in batches) which are not older than allowed duration
  *  2. Fetch the overall price statistics based on the ticks of all instruments in the sliding time interval
  *  3. Fetch the price statistics based on the ticks of one instrument in the sliding time interval
+ *  4. Fetch the price statistics of an instrument group in the sliding time interval
+ *  5. Fetch the most active instruments and the instruments with the largest price range in the sliding time interval
+ *  6. Fetch the OHLC candles of one instrument
  */
 
 
@@ -35,19 +50,72 @@ public class TickStatisticsController {
     @Autowired
     private PriceAggregationService priceAggregationService;
 
+    @Autowired
+    private InstrumentRankingService instrumentRankingService;
+
+    @Autowired
+    private InstrumentGroupService instrumentGroupService;
+
+    @Autowired
+    private TickJsonParser tickJsonParser;
+
+    @Autowired
+    private StatResponseCache statResponseCache;
+
 
     /**
      * Publish ticks which are not older than allowed time duration.
      * Returns  201 status if successfully published.
      *          204 status if the tick is older than predefined allowed time duration
-     * @param tick : pojo holding information about the instrument
+     *          400 status if the body is not a well formed tick
+     *          413 status if the body is larger than the configured limit
+     * @param body json object holding the instrument, price and timestamp of the tick
      */
     @PostMapping(value = "/ticks", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> publishTick(InputStream body) throws IOException {
+        try {
+            TickBatch tickBatch = tickJsonParser.parseTick(body);
+            // Guarded as the price and timestamp would be boxed on every request
+            if (log.isDebugEnabled()) log.debug("Received request to publish a tick: instrument={}, price={}, timestamp={}",
+                    tickBatch.getInstrument(0), tickBatch.getPrice(0), tickBatch.getTimestamp(0));
+            // Stale ticks are only counted by the service, rejecting them must stay cheap during feed catch-up
+            boolean accepted = priceAggregationService.offerTick(tickBatch.getInstrument(0), tickBatch.getPrice(0), tickBatch.getTimestamp(0));
+            return ResponseEntity.status(accepted ? HttpStatus.CREATED : HttpStatus.NO_CONTENT).build();
+
+        } catch (IllegalArgumentException iae) {
+            log.error("IllegalArgumentException - {}", iae.getMessage(), iae);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.BAD_REQUEST, iae.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+
+        } catch (TickPayloadTooLargeException tptle) {
+            log.error("TickPayloadTooLargeException - {}", tptle.getMessage());
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, tptle.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+
+        } finally {
+            tickJsonParser.release();
+        }
+    }
+
+
+    /**
+     * Publish a batch of ticks in one request. Ticks older than allowed time duration are skipped.
+     * Returns  201 status if the batch was processed.
+     *          400 status if the body is not a well formed array of ticks; no tick of the batch is processed then
+     *          413 status if the body is larger than the configured limit; no tick of the batch is processed then
+     * @param body json array of ticks
+     */
+    @PostMapping(value = "/ticks/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
-    public void publishTick(@RequestBody Tick tick) {
-        log.debug("Received request to publish a tick: {}", tick);
+    public void publishTicks(InputStream body) throws IOException {
         try {
-            priceAggregationService.processTick(tick);
+            TickBatch tickBatch = tickJsonParser.parseTicks(body);
+            if (log.isDebugEnabled()) log.debug("Received request to publish {} ticks", tickBatch.size());
+            for (int i = 0; i < tickBatch.size(); i++) {
+                priceAggregationService.offerTick(tickBatch.getInstrument(i), tickBatch.getPrice(i), tickBatch.getTimestamp(i));
+            }
 
         } catch (IllegalArgumentException iae) {
             log.error("IllegalArgumentException - {}", iae.getMessage(), iae);
@@ -55,11 +123,14 @@ public class TickStatisticsController {
             log.info("Returning ResponseStatusException: ", responseStatusException);
             throw responseStatusException;
 
-        } catch (TickOlderThanAllowedDurationException totade) {
-            log.error("TickOlderThanAllowedDurationException - {}", totade.getMessage(), totade);
-            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.NO_CONTENT, totade.getMessage());
+        } catch (TickPayloadTooLargeException tptle) {
+            log.error("TickPayloadTooLargeException - {}", tptle.getMessage());
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, tptle.getMessage());
             log.info("Returning ResponseStatusException: ", responseStatusException);
             throw responseStatusException;
+
+        } finally {
+            tickJsonParser.release();
         }
     }
 
@@ -96,17 +167,60 @@ public class TickStatisticsController {
 
     /**
      * Fetches aggregated statistics for all ticks for a specific instrument that happened in last sliding time interval.
+     * Responses carry an ETag derived from the stat version; a matching If-None-Match header is answered with 304.
      * @param instrumentIdentifier identifier for the instrument
+     * @param ifNoneMatch optional ETags the client already holds
      * @return If success, returns 302 status with aggregated statistics for the given instrument.
+     *         Returns status 304 without body if the client already holds the current version.
      *         Returns status 500 in case of any unexpected internal errors.
      */
     @GetMapping(value = "/statistics/{instrument_identifier}", produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.FOUND)
-    public StatDto getStatisticsForInstrument(@PathVariable("instrument_identifier") String instrumentIdentifier) {
+    public ResponseEntity<byte[]> getStatisticsForInstrument(@PathVariable("instrument_identifier") String instrumentIdentifier,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.debug("Received a request to fetch stat for instrument identifier {}", instrumentIdentifier);
-        StatDto statDtoResponse = null;
         try {
             Optional<Stat> optionalStat = priceAggregationService.getStatForInstrument(instrumentIdentifier);
+            String etag = optionalStat.map(statResponseCache::getETag).orElse(StatResponseCache.EMPTY_STAT_ETAG);
+            if (matchesETag(ifNoneMatch, etag)) {
+                log.debug("Returning not modified for {}", etag);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            byte[] body = optionalStat.isPresent()
+                    ? statResponseCache.getBody(instrumentIdentifier, optionalStat.get())
+                    : statResponseCache.getEmptyBody();
+            log.debug("Returning {} with ETag {}", optionalStat, etag);
+            return ResponseEntity.status(HttpStatus.FOUND).eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+
+        } catch (IllegalArgumentException iae) {
+            log.error("IllegalArgumentException - {}", iae.getMessage(), iae);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.BAD_REQUEST, iae.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+
+        } catch (Exception ex){
+            log.error("Exception - {}", ex.getMessage(), ex);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+        }
+    }
+
+
+    /**
+     * Fetches rollup statistics for all ticks of the members of an instrument group that happened in last sliding time interval.
+     * Groups are configured by instrument suffix, prefix or mapping file.
+     * @param group name of the group
+     * @return If success, returns 302 status with aggregated statistics for the given group.
+     *         Returns status 500 in case of any unexpected internal errors.
+     */
+    @GetMapping(value = "/statistics/group/{group}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.FOUND)
+    public StatDto getStatisticsForGroup(@PathVariable("group") String group) {
+        log.debug("Received a request to fetch stat for group {}", group);
+        StatDto statDtoResponse = null;
+        try {
+            Optional<Stat> optionalStat = instrumentGroupService.getStatForGroup(group);
             if (optionalStat.isPresent()){
                 statDtoResponse = modelMapper.map(optionalStat.get(), StatDto.class);
 
@@ -129,4 +243,107 @@ public class TickStatisticsController {
         log.debug("Returning {}", statDtoResponse);
         return statDtoResponse;
     }
+
+
+    /**
+     * Fetches the instruments with the most ticks in the last sliding time interval.
+     * @param limit maximum number of instruments to return, 20 by default
+     * @return If success, returns 302 status with the statistics of the most active instruments, most active first.
+     *         Returns status 400 if the limit is not positive.
+     *         Returns status 500 in case of any unexpected internal errors.
+     */
+    @GetMapping(value = "/statistics/top/most-active", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.FOUND)
+    public List<InstrumentStatDto> getMostActiveInstruments(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.debug("Received a request to fetch the {} most active instruments", limit);
+        return getRanking(() -> instrumentRankingService.getMostActiveInstruments(limit));
+    }
+
+
+    /**
+     * Fetches the instruments with the largest price range (max - min) in the last sliding time interval.
+     * @param limit maximum number of instruments to return, 20 by default
+     * @return If success, returns 302 status with the statistics of the instruments, largest range first.
+     *         Returns status 400 if the limit is not positive.
+     *         Returns status 500 in case of any unexpected internal errors.
+     */
+    @GetMapping(value = "/statistics/top/largest-range", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.FOUND)
+    public List<InstrumentStatDto> getLargestRangeInstruments(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.debug("Received a request to fetch the {} instruments with the largest range", limit);
+        return getRanking(() -> instrumentRankingService.getLargestRangeInstruments(limit));
+    }
+
+
+    /**
+     * Fetches the OHLC candles of a specific instrument, maintained incrementally as ticks are published.
+     * @param instrumentIdentifier identifier for the instrument
+     * @param resolution candle resolution in milliseconds, must be one of the configured resolutions. Defaults to the first one
+     * @return If success, returns 302 status with the candles of the instrument, oldest first.
+     *         Returns status 400 if the instrument is empty or the resolution is not configured.
+     *         Returns status 500 in case of any unexpected internal errors.
+     */
+    @GetMapping(value = "/candles/{instrument_identifier}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.FOUND)
+    public List<CandleDto> getCandlesForInstrument(@PathVariable("instrument_identifier") String instrumentIdentifier,
+                                                   @RequestParam(value = "resolution", required = false) Long resolution) {
+        log.debug("Received a request to fetch candles of resolution {} for instrument identifier {}", resolution, instrumentIdentifier);
+        List<CandleDto> candleDtos = new ArrayList<>();
+        try {
+            long resolutionInMs = resolution != null ? resolution : priceAggregationService.getCandleResolutionsInMs()[0];
+            priceAggregationService.getCandlesForInstrument(instrumentIdentifier, resolutionInMs)
+                    .forEach(candle -> candleDtos.add(modelMapper.map(candle, CandleDto.class)));
+
+        } catch (IllegalArgumentException iae) {
+            log.error("IllegalArgumentException - {}", iae.getMessage(), iae);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.BAD_REQUEST, iae.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+
+        } catch (Exception ex){
+            log.error("Exception - {}", ex.getMessage(), ex);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+        }
+        log.debug("Returning {} candles", candleDtos.size());
+        return candleDtos;
+    }
+
+
+    private List<InstrumentStatDto> getRanking(Supplier<Map<String, Stat>> rankingSupplier) {
+        List<InstrumentStatDto> instrumentStatDtos = new ArrayList<>();
+        try {
+            rankingSupplier.get().forEach((instrument, stat) -> {
+                InstrumentStatDto instrumentStatDto = modelMapper.map(stat, InstrumentStatDto.class);
+                instrumentStatDto.setInstrument(instrument);
+                instrumentStatDtos.add(instrumentStatDto);
+            });
+
+        } catch (IllegalArgumentException iae) {
+            log.error("IllegalArgumentException - {}", iae.getMessage(), iae);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.BAD_REQUEST, iae.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+
+        } catch (Exception ex){
+            log.error("Exception - {}", ex.getMessage(), ex);
+            ResponseStatusException responseStatusException = new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+            log.info("Returning ResponseStatusException: ", responseStatusException);
+            throw responseStatusException;
+        }
+        log.debug("Returning {}", instrumentStatDtos);
+        return instrumentStatDtos;
+    }
+
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(etag)) return true;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,31 @@
+package com.idx.tick.config;
+
+import com.idx.tick.service.PriceAggregationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the state of the price aggregation engine on the actuator info endpoint
+ */
+@Component
+public class PriceAggregationInfoContributor implements InfoContributor {
+
+    @Autowired
+    private PriceAggregationService priceAggregationService;
+
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("liveInstruments", priceAggregationService.getLiveInstrumentCount());
+        details.put("staleTicks", priceAggregationService.getStaleTickCount());
+        details.put("tickDeduplication", priceAggregationService.isTickDeduplicationEnabled());
+        details.put("duplicateTicks", priceAggregationService.getDuplicateTickCount());
+        builder.withDetail("priceAggregation", details);
+    }
+}
@@ -2,11 +2,15 @@ package com.idx.tick.exception;
 
 import com.idx.tick.model.Tick;
 
+/**
+ * Thrown for a tick older than the allowed time duration. Stale ticks are expected during feed catch-up,
+ * so no stack trace is captured
+ */
 public class TickOlderThanAllowedDurationException extends Exception {
 
     private static final String MESSAGE_FORMAT = "%s is older than allowed duration of %s milliseconds";
 
     public TickOlderThanAllowedDurationException(Tick tick, long allowedDurationInMs) {
-        super(String.format(MESSAGE_FORMAT, tick, allowedDurationInMs));
+        super(String.format(MESSAGE_FORMAT, tick, allowedDurationInMs), null, false, false);
     }
 }
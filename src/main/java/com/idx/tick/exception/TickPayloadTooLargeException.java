@@ -0,0 +1,13 @@
+package com.idx.tick.exception;
+
+/**
+ * Thrown when a published tick body exceeds the configured size limit
+ */
+public class TickPayloadTooLargeException extends RuntimeException {
+
+    private static final String MESSAGE_FORMAT = "Request body exceeds the limit of %s bytes";
+
+    public TickPayloadTooLargeException(int maxBodyBytes) {
+        super(String.format(MESSAGE_FORMAT, maxBodyBytes));
+    }
+}
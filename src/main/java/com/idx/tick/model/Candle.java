@@ -0,0 +1,19 @@
+package com.idx.tick.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class Candle {
+
+    private final long timestamp;
+    private final long resolution;
+    private final double open;
+    private final double high;
+    private final double low;
+    private final double close;
+    private final long count;
+}
@@ -4,6 +4,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.util.Objects;
+
 @Getter
 @ToString
 @NoArgsConstructor
@@ -14,22 +16,32 @@ public class Stat {
     private Double min;
     private Long count;
     private volatile Long lastUpdatedTs;
+    // Changes only when avg/max/min/count change, so it can back HTTP caching of the serialized stat
+    private long version;
 
 
     public Stat(Double avg, Double max, Double min, Long count, Long updateTimestamp) {
+        this(avg, max, min, count, updateTimestamp, 0L);
+    }
+
+    public Stat(Double avg, Double max, Double min, Long count, Long updateTimestamp, long version) {
         this.avg = avg;
         this.max = (count == 0) ? 0.0 : max;
         this.min = (count == 0) ? 0.0 : min;
         this.count = count;
         this.lastUpdatedTs = updateTimestamp != null ? updateTimestamp : System.currentTimeMillis();
+        this.version = version;
     }
 
 
-    public void update(Double average, Double maxPrice, Double minPrice, Long tickCount, Long updateTimestamp) {
-        this.avg = average;
-        this.max = (tickCount == 0) ? 0.0 : maxPrice;
-        this.min = (tickCount == 0) ? 0.0 : minPrice;
-        this.count = tickCount;
-        this.lastUpdatedTs = updateTimestamp != null ? updateTimestamp : System.currentTimeMillis();
+    /**
+     * @return true if both stats hold the same avg, max, min and count
+     */
+    public boolean hasSameValuesAs(Stat other) {
+        return other != null
+                && Objects.equals(avg, other.avg)
+                && Objects.equals(max, other.max)
+                && Objects.equals(min, other.min)
+                && Objects.equals(count, other.count);
     }
 }
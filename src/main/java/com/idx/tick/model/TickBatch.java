@@ -0,0 +1,73 @@
+package com.idx.tick.model;
+
+import java.util.Arrays;
+
+/**
+ * TickBatch : primitive, reusable holder for ticks parsed off the wire.
+ * Columns are kept as parallel arrays so that parsing a request does not allocate a Tick per entry.
+ * Instances are not thread safe and are meant to be reused by a single thread.
+ */
+public class TickBatch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] instruments = new String[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private int size;
+
+
+    public void add(String instrument, double price, long timestamp) {
+        if (size == instruments.length) {
+            int newCapacity = size << 1;
+            instruments = Arrays.copyOf(instruments, newCapacity);
+            prices = Arrays.copyOf(prices, newCapacity);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+        }
+        instruments[size] = instrument;
+        prices[size] = price;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    public void clear() {
+        Arrays.fill(instruments, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Clears the batch, dropping its arrays if they grew beyond maxRetainedCapacity
+     */
+    public void release(int maxRetainedCapacity) {
+        clear();
+        if (instruments.length > maxRetainedCapacity) {
+            instruments = new String[INITIAL_CAPACITY];
+            prices = new double[INITIAL_CAPACITY];
+            timestamps = new long[INITIAL_CAPACITY];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getInstrument(int index) {
+        return instruments[checkIndex(index)];
+    }
+
+    public double getPrice(int index) {
+        return prices[checkIndex(index)];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,15 @@
+package com.idx.tick.model.dto;
+
+import lombok.Data;
+
+@Data
+public class CandleDto {
+
+    private Long timestamp;
+    private Long resolution;
+    private Double open;
+    private Double high;
+    private Double low;
+    private Double close;
+    private Long count;
+}
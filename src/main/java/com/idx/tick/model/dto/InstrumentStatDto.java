@@ -0,0 +1,13 @@
+package com.idx.tick.model.dto;
+
+import lombok.Data;
+
+@Data
+public class InstrumentStatDto {
+
+    private String instrument;
+    private Double avg = 0.0;
+    private Double max = 0.0;
+    private Double min = 0.0;
+    private Long count = 0L;
+}
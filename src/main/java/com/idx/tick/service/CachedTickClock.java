@@ -0,0 +1,41 @@
+package com.idx.tick.service;
+
+/**
+ * Clock reading a timestamp advanced by a daemon thread every resolution milliseconds, so that the hot path
+ * reads a volatile field instead of the system clock. Lags the system clock by up to the resolution.
+ */
+class CachedTickClock implements TickClock, AutoCloseable {
+
+    private final Thread ticker;
+    private volatile long currentTimeMillis = System.currentTimeMillis();
+    private volatile boolean running = true;
+
+
+    CachedTickClock(long resolutionInMs) {
+        ticker = new Thread(() -> {
+            while (running) {
+                currentTimeMillis = System.currentTimeMillis();
+                try {
+                    Thread.sleep(resolutionInMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }, "tick-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        ticker.interrupt();
+    }
+}
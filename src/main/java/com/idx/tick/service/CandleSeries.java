@@ -0,0 +1,161 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Candle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded ring of OHLC candles of one instrument at one resolution.
+ * Each slot holds the candle of one time bucket; a tick for a newer bucket recycles the slot of the oldest one.
+ * Ticks arriving for a bucket which already left the ring are ignored, as are ticks from beyond the next bucket,
+ * which would otherwise push the ring ahead of the current time and have every later tick ignored.
+ * The ring starts with a few slots and grows up to its capacity only when the buckets it holds need more,
+ * so an instrument ticking in bursts does not pay for the full history.
+ */
+final class CandleSeries {
+
+    private static final long EMPTY_SLOT = Long.MIN_VALUE;
+    private static final int INITIAL_SLOTS = 4;
+
+    private final long resolutionInMs;
+    private final int capacity;
+    private long[] bucketStarts;
+    // Offsets of the open and close ticks from the bucket start, packed as two ints
+    private long[] openCloseOffsets;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private long[] counts;
+    private long latestBucketStart = EMPTY_SLOT;
+
+
+    /**
+     * @param resolutionInMs length of a bucket, at most Integer.MAX_VALUE
+     * @param capacity number of buckets held by the ring
+     */
+    CandleSeries(long resolutionInMs, int capacity) {
+        this.resolutionInMs = resolutionInMs;
+        this.capacity = capacity;
+        allocate(Math.min(capacity, INITIAL_SLOTS));
+    }
+
+
+    /**
+     * @param currentTimestamp current time, bounding the buckets a tick may open
+     */
+    synchronized void update(double price, long timestamp, long currentTimestamp) {
+        long bucket = Math.floorDiv(timestamp, resolutionInMs);
+        if (bucket > Math.floorDiv(currentTimestamp, resolutionInMs) + 1) return;
+        long bucketStart = bucket * resolutionInMs;
+        long newestBucketStart = Math.max(latestBucketStart, bucketStart);
+        long oldestBucketStart = newestBucketStart - (long) (capacity - 1) * resolutionInMs;
+        if (bucketStart < oldestBucketStart) return;
+
+        int slot = slotOf(bucketStart);
+        if (bucketStarts[slot] != bucketStart && bucketStarts[slot] >= oldestBucketStart) {
+            // Both buckets belong to the ring, which is only possible while it has fewer slots than its capacity
+            grow(bucketStart, newestBucketStart, oldestBucketStart);
+            slot = slotOf(bucketStart);
+        }
+        int offset = (int) (timestamp - bucketStart);
+
+        if (bucketStarts[slot] == bucketStart) {
+            int openOffset = (int) (openCloseOffsets[slot] >>> Integer.SIZE);
+            int closeOffset = (int) openCloseOffsets[slot];
+            if (offset < openOffset) {
+                openOffset = offset;
+                opens[slot] = price;
+            }
+            if (offset >= closeOffset) {
+                closeOffset = offset;
+                closes[slot] = price;
+            }
+            openCloseOffsets[slot] = pack(openOffset, closeOffset);
+            highs[slot] = Math.max(highs[slot], price);
+            lows[slot] = Math.min(lows[slot], price);
+            counts[slot]++;
+
+        } else {
+            bucketStarts[slot] = bucketStart;
+            openCloseOffsets[slot] = pack(offset, offset);
+            opens[slot] = price;
+            highs[slot] = price;
+            lows[slot] = price;
+            closes[slot] = price;
+            counts[slot] = 1;
+            latestBucketStart = newestBucketStart;
+        }
+    }
+
+
+    /**
+     * @return candles still held by the ring, oldest first
+     */
+    synchronized List<Candle> getCandles() {
+        List<Candle> candles = new ArrayList<>(bucketStarts.length);
+        if (latestBucketStart == EMPTY_SLOT) return candles;
+
+        long oldestBucketStart = latestBucketStart - (long) (capacity - 1) * resolutionInMs;
+        for (long bucketStart = oldestBucketStart; bucketStart <= latestBucketStart; bucketStart += resolutionInMs) {
+            int slot = slotOf(bucketStart);
+            if (bucketStarts[slot] == bucketStart) {
+                candles.add(new Candle(bucketStart, resolutionInMs, opens[slot], highs[slot], lows[slot], closes[slot], counts[slot]));
+            }
+        }
+        return candles;
+    }
+
+
+    private int slotOf(long bucketStart) {
+        return (int) Math.floorMod(bucketStart / resolutionInMs, (long) bucketStarts.length);
+    }
+
+    /**
+     * Resizes the ring so that the incoming bucket and every held bucket from oldestBucketStart on get a slot of their own
+     */
+    private void grow(long incomingBucketStart, long newestBucketStart, long oldestBucketStart) {
+        long oldestHeldBucketStart = incomingBucketStart;
+        for (long bucketStart : bucketStarts) {
+            if (bucketStart >= oldestBucketStart) oldestHeldBucketStart = Math.min(oldestHeldBucketStart, bucketStart);
+        }
+        long span = (newestBucketStart - oldestHeldBucketStart) / resolutionInMs + 1;
+
+        long[] oldBucketStarts = bucketStarts;
+        long[] oldOpenCloseOffsets = openCloseOffsets;
+        double[] oldOpens = opens;
+        double[] oldHighs = highs;
+        double[] oldLows = lows;
+        double[] oldCloses = closes;
+        long[] oldCounts = counts;
+        allocate((int) Math.min(capacity, Math.max(span, 2L * oldBucketStarts.length)));
+        for (int oldSlot = 0; oldSlot < oldBucketStarts.length; oldSlot++) {
+            if (oldBucketStarts[oldSlot] < oldestBucketStart) continue;
+            int slot = slotOf(oldBucketStarts[oldSlot]);
+            bucketStarts[slot] = oldBucketStarts[oldSlot];
+            openCloseOffsets[slot] = oldOpenCloseOffsets[oldSlot];
+            opens[slot] = oldOpens[oldSlot];
+            highs[slot] = oldHighs[oldSlot];
+            lows[slot] = oldLows[oldSlot];
+            closes[slot] = oldCloses[oldSlot];
+            counts[slot] = oldCounts[oldSlot];
+        }
+    }
+
+    private void allocate(int slots) {
+        bucketStarts = new long[slots];
+        openCloseOffsets = new long[slots];
+        opens = new double[slots];
+        highs = new double[slots];
+        lows = new double[slots];
+        closes = new double[slots];
+        counts = new long[slots];
+        Arrays.fill(bucketStarts, EMPTY_SLOT);
+    }
+
+    private static long pack(int openOffset, int closeOffset) {
+        return ((long) openOffset << Integer.SIZE) | (closeOffset & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,82 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Stat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rollup of the stats of the member instruments of one group, maintained from stat deltas.
+ * Count and price sum are adjusted by the difference between the old and the new stat of a member,
+ * and member mins/maxes are kept in sorted multisets. An update costs O(log members). Reads return
+ * a snapshot built on update, so they cost O(1).
+ */
+final class GroupAggregate {
+
+    private final Map<String, Stat> memberStats = new HashMap<>();
+    private final TreeMap<Double, Integer> memberMins = new TreeMap<>();
+    private final TreeMap<Double, Integer> memberMaxes = new TreeMap<>();
+    private long count;
+    // Kahan compensated, so that adding and removing member sums does not drift over time
+    private double sum;
+    private double sumCompensation;
+    private volatile Stat snapshot = new Stat(0.0, 0.0, 0.0, 0L, null);
+
+
+    synchronized void update(String instrument, Stat newStat) {
+        Stat oldStat = memberStats.get(instrument);
+        if (oldStat != null && oldStat.getVersion() > newStat.getVersion()) return;
+
+        remove(oldStat);
+        if (newStat.getCount() > 0) {
+            memberStats.put(instrument, newStat);
+            add(newStat);
+        } else {
+            memberStats.remove(instrument);
+        }
+        takeSnapshot();
+    }
+
+    synchronized void remove(String instrument) {
+        remove(memberStats.remove(instrument));
+        takeSnapshot();
+    }
+
+    Stat getStat() {
+        return snapshot;
+    }
+
+
+    private void add(Stat stat) {
+        count += stat.getCount();
+        addToSum(stat.getAvg() * stat.getCount());
+        memberMins.merge(stat.getMin(), 1, Integer::sum);
+        memberMaxes.merge(stat.getMax(), 1, Integer::sum);
+    }
+
+    private void remove(Stat stat) {
+        if (stat == null) return;
+        count -= stat.getCount();
+        addToSum(-stat.getAvg() * stat.getCount());
+        memberMins.computeIfPresent(stat.getMin(), (price, members) -> members == 1 ? null : members - 1);
+        memberMaxes.computeIfPresent(stat.getMax(), (price, members) -> members == 1 ? null : members - 1);
+        if (count == 0) {
+            sum = 0.0;
+            sumCompensation = 0.0;
+        }
+    }
+
+    private void addToSum(double value) {
+        double y = value - sumCompensation;
+        double t = sum + y;
+        sumCompensation = (t - sum) - y;
+        sum = t;
+    }
+
+    private void takeSnapshot() {
+        snapshot = count == 0
+                ? new Stat(0.0, 0.0, 0.0, 0L, null)
+                : new Stat(sum / count, memberMaxes.lastKey(), memberMins.firstKey(), count, null);
+    }
+}
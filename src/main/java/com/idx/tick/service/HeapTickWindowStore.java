@@ -0,0 +1,54 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Tick;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Default store keeping the ticks of all instruments as Tick objects in arrival order
+ */
+class HeapTickWindowStore implements TickWindowStore {
+
+    private final List<Tick> ticks = new CopyOnWriteArrayList<>();
+
+
+    @Override
+    public void add(String instrument, double price, long timestamp) {
+        ticks.add(new Tick(instrument, price, timestamp));
+    }
+
+    @Override
+    public void forEachPrice(long fromTimestamp, DoubleConsumer priceConsumer) {
+        for (Tick tick : ticks) {
+            if (fromTimestamp <= tick.getTimestamp()) priceConsumer.accept(tick.getPrice());
+        }
+    }
+
+    @Override
+    public void forEachPrice(String instrument, long fromTimestamp, DoubleConsumer priceConsumer) {
+        for (Tick tick : ticks) {
+            if (instrument.equals(tick.getInstrument()) && fromTimestamp <= tick.getTimestamp()) priceConsumer.accept(tick.getPrice());
+        }
+    }
+
+    @Override
+    public void expire(long fromTimestamp, ExpiredTickConsumer expiredTickConsumer) {
+        ticks.removeIf(tick -> {
+            if (fromTimestamp <= tick.getTimestamp()) return false;
+            expiredTickConsumer.accept(tick.getInstrument(), tick.getPrice(), tick.getTimestamp());
+            return true;
+        });
+    }
+
+    @Override
+    public long size() {
+        return ticks.size();
+    }
+
+    @Override
+    public void clear() {
+        ticks.clear();
+    }
+}
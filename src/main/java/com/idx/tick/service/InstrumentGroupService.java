@@ -0,0 +1,136 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Stat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains rollup stats of instrument groups from the per-instrument stat changes published by
+ * {@link PriceAggregationService}, so that a group query never iterates over the group members.
+ * An instrument belongs to every group matching it:
+ *  1. its suffix after the configured separator, e.g. N for IBM.N
+ *  2. configured prefix groups, e.g. OPTIONS:OPT. for every instrument starting with OPT.
+ *  3. the groups listed for it in the mapping file, e.g. IBM.N=TECH,US_EQUITY
+ */
+@Slf4j
+@Component
+public class InstrumentGroupService implements InstrumentStatListener {
+
+    private final Map<String, GroupAggregate> groupAggregates = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> instrumentGroups = new ConcurrentHashMap<>();
+    // Several groups may share a prefix, kept in their definition order
+    private final Map<String, List<String>> prefixGroups = new LinkedHashMap<>();
+    private final Map<String, List<String>> mappedGroups = new HashMap<>();
+
+    @Value("${instrument.group.suffix.separator:}")
+    private String suffixSeparator;
+
+    @Value("${instrument.group.prefixes:}")
+    private String[] prefixGroupDefinitions;
+
+    @Value("${instrument.group.mapping.file:}")
+    private String mappingFile;
+
+
+    @PostConstruct
+    public void loadGroupDefinitions() throws IOException {
+        for (String prefixGroupDefinition : prefixGroupDefinitions) {
+            String[] groupAndPrefix = prefixGroupDefinition.trim().split(":", 2);
+            Assert.isTrue(groupAndPrefix.length == 2 && StringUtils.hasText(groupAndPrefix[0]) && StringUtils.hasText(groupAndPrefix[1]),
+                    "Prefix group definition " + prefixGroupDefinition + " is not of the form group:prefix");
+            prefixGroups.computeIfAbsent(groupAndPrefix[1], key -> new ArrayList<>()).add(groupAndPrefix[0]);
+        }
+
+        if (StringUtils.hasText(mappingFile)) {
+            // A plain path is a file of the file system, URLs such as classpath: or file: are resolved as such
+            Resource mappingResource = ResourceUtils.isUrl(mappingFile)
+                    ? new DefaultResourceLoader().getResource(mappingFile) : new FileSystemResource(mappingFile);
+            Properties mapping = PropertiesLoaderUtils.loadProperties(mappingResource);
+            mapping.stringPropertyNames().forEach(instrument -> {
+                List<String> groups = Arrays.stream(StringUtils.commaDelimitedListToStringArray(mapping.getProperty(instrument)))
+                        .map(String::trim)
+                        .filter(StringUtils::hasText)
+                        .collect(Collectors.toUnmodifiableList());
+                if (! groups.isEmpty()) mappedGroups.put(instrument, groups);
+            });
+        }
+        log.info("Loaded instrument groups: suffix separator '{}', {} prefix groups, {} mapped instruments",
+                suffixSeparator, prefixGroups.size(), mappedGroups.size());
+    }
+
+
+    @Override
+    public void onStatChanged(String instrument, Stat newStat) {
+        for (String group : getGroupsOf(instrument)) {
+            groupAggregates.computeIfAbsent(group, key -> new GroupAggregate()).update(instrument, newStat);
+        }
+    }
+
+    @Override
+    public void onInstrumentRemoved(String instrument) {
+        List<String> groups = instrumentGroups.remove(instrument);
+        if (groups == null) return;
+        for (String group : groups) {
+            GroupAggregate groupAggregate = groupAggregates.get(group);
+            if (groupAggregate != null) groupAggregate.remove(instrument);
+        }
+    }
+
+
+    /**
+     * Fetches the rollup price stats of a group, across the ticks of its members in the current sliding time interval
+     * @return Optional of the group price statistics. Empty if no member of the group published a tick yet
+     */
+    public Optional<Stat> getStatForGroup(String group) {
+        Assert.hasText(group, "Group passed is either null or empty");
+        GroupAggregate groupAggregate = groupAggregates.get(group);
+        return groupAggregate == null ? Optional.empty() : Optional.of(groupAggregate.getStat());
+    }
+
+    /**
+     * @return groups the instrument belongs to
+     */
+    public List<String> getGroupsOf(String instrument) {
+        return instrumentGroups.computeIfAbsent(instrument, this::resolveGroups);
+    }
+
+
+    private List<String> resolveGroups(String instrument) {
+        Set<String> groups = new LinkedHashSet<>();
+        if (StringUtils.hasLength(suffixSeparator)) {
+            int separatorIndex = instrument.lastIndexOf(suffixSeparator);
+            if (separatorIndex >= 0 && separatorIndex + suffixSeparator.length() < instrument.length()) {
+                groups.add(instrument.substring(separatorIndex + suffixSeparator.length()));
+            }
+        }
+        prefixGroups.forEach((prefix, groupsOfPrefix) -> {
+            if (instrument.startsWith(prefix)) groups.addAll(groupsOfPrefix);
+        });
+        groups.addAll(mappedGroups.getOrDefault(instrument, Collections.emptyList()));
+        return groups.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(groups));
+    }
+}
@@ -0,0 +1,63 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Stat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps instrument rankings up to date from the stat changes published by {@link PriceAggregationService},
+ * both on ingest and when ticks slide out of the window, so top N queries never scan all instruments.
+ */
+@Slf4j
+@Component
+public class InstrumentRankingService implements InstrumentStatListener {
+
+    private final StatRankingIndex mostActiveIndex = new StatRankingIndex(stat -> stat.getCount());
+    private final StatRankingIndex largestRangeIndex = new StatRankingIndex(stat -> stat.getMax() - stat.getMin());
+
+
+    @Override
+    public void onStatChanged(String instrument, Stat newStat) {
+        log.debug("Updating rankings of instrument {} with {}", instrument, newStat);
+        mostActiveIndex.update(instrument, newStat);
+        largestRangeIndex.update(instrument, newStat);
+    }
+
+    @Override
+    public void onInstrumentRemoved(String instrument) {
+        log.debug("Removing instrument {} from rankings", instrument);
+        mostActiveIndex.remove(instrument);
+        largestRangeIndex.remove(instrument);
+    }
+
+
+    /**
+     * Fetches the instruments with the most ticks in the current sliding time interval
+     * @param limit maximum number of instruments to return
+     * @return stats by instrument, most active first
+     */
+    public Map<String, Stat> getMostActiveInstruments(int limit) {
+        return top(mostActiveIndex, limit);
+    }
+
+    /**
+     * Fetches the instruments with the largest price range (max - min) in the current sliding time interval
+     * @param limit maximum number of instruments to return
+     * @return stats by instrument, largest range first
+     */
+    public Map<String, Stat> getLargestRangeInstruments(int limit) {
+        return top(largestRangeIndex, limit);
+    }
+
+
+    private Map<String, Stat> top(StatRankingIndex index, int limit) {
+        Assert.isTrue(limit > 0, "Limit passed must be greater than 0");
+        Map<String, Stat> top = new LinkedHashMap<>();
+        index.top(limit).forEach(entry -> top.put(entry.instrument, entry.stat));
+        return top;
+    }
+}
@@ -0,0 +1,16 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Stat;
+
+/**
+ * Callback for components that keep state derived from the per-instrument stats.
+ * Invoked by {@link PriceAggregationService} whenever the published stat of an instrument changes value,
+ * either because a tick was added or because ticks slid out of the window, and when an idle instrument is evicted.
+ */
+public interface InstrumentStatListener {
+
+    void onStatChanged(String instrument, Stat newStat);
+
+    default void onInstrumentRemoved(String instrument) {
+    }
+}
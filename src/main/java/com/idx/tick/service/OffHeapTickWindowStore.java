@@ -0,0 +1,185 @@
+package com.idx.tick.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Store keeping ticks outside of the heap, for large sliding windows.
+ * Ticks are written as fixed width (timestamp, price) records into direct ByteBuffer chunks, one chain of chunks
+ * per instrument. Each chunk is released as soon as all its own ticks expired, wherever it sits in the chain,
+ * so an out of order or future tick only keeps its own chunk alive. Released chunks are recycled through a bounded pool.
+ * The heap still holds a chunk object and a direct buffer with its cleaner per chunk, so it grows with the number
+ * of ticks in the window divided by the chunk capacity, not with the number of ticks.
+ */
+@Slf4j
+class OffHeapTickWindowStore implements TickWindowStore {
+
+    private static final int RECORD_SIZE = Long.BYTES + Double.BYTES;
+    private static final int PRICE_OFFSET = Long.BYTES;
+
+    private final int chunkCapacity;
+    private final int maxPooledChunks;
+    private final Map<String, InstrumentTicks> instrumentTicksMap = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> chunkPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledChunkCount = new AtomicInteger();
+    private final AtomicLong size = new AtomicLong();
+
+
+    OffHeapTickWindowStore(int chunkCapacity, int maxPooledChunks) {
+        this.chunkCapacity = chunkCapacity;
+        this.maxPooledChunks = maxPooledChunks;
+    }
+
+
+    @Override
+    public void add(String instrument, double price, long timestamp) {
+        // An instrument chain retired by a concurrent expiry refuses the tick, a new chain is created then
+        while (! instrumentTicksMap.computeIfAbsent(instrument, key -> new InstrumentTicks()).add(price, timestamp)) {
+            Thread.onSpinWait();
+        }
+        size.incrementAndGet();
+    }
+
+    @Override
+    public void forEachPrice(long fromTimestamp, DoubleConsumer priceConsumer) {
+        instrumentTicksMap.values().forEach(instrumentTicks -> instrumentTicks.forEachPrice(fromTimestamp, priceConsumer));
+    }
+
+    @Override
+    public void forEachPrice(String instrument, long fromTimestamp, DoubleConsumer priceConsumer) {
+        InstrumentTicks instrumentTicks = instrumentTicksMap.get(instrument);
+        if (instrumentTicks != null) instrumentTicks.forEachPrice(fromTimestamp, priceConsumer);
+    }
+
+    @Override
+    public void expire(long fromTimestamp, ExpiredTickConsumer expiredTickConsumer) {
+        Iterator<Map.Entry<String, InstrumentTicks>> iterator = instrumentTicksMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, InstrumentTicks> entry = iterator.next();
+            InstrumentTicks instrumentTicks = entry.getValue();
+            size.addAndGet(-instrumentTicks.expire(fromTimestamp, entry.getKey(), expiredTickConsumer));
+            if (instrumentTicks.isRetired()) iterator.remove();
+        }
+        log.debug("Off-heap store holds {} ticks after expiry, {} chunks pooled", size.get(), pooledChunkCount.get());
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        expire(Long.MAX_VALUE);
+    }
+
+
+    private ByteBuffer acquireChunk() {
+        ByteBuffer chunk = chunkPool.poll();
+        if (chunk != null) {
+            pooledChunkCount.decrementAndGet();
+            return chunk;
+        }
+        return ByteBuffer.allocateDirect(chunkCapacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    private void releaseChunk(ByteBuffer chunk) {
+        if (pooledChunkCount.incrementAndGet() <= maxPooledChunks) {
+            chunkPool.offer(chunk);
+        } else {
+            // Left to the garbage collector, which frees the native memory of the buffer
+            pooledChunkCount.decrementAndGet();
+        }
+    }
+
+
+    private final class InstrumentTicks {
+
+        private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+        private boolean retired;
+
+
+        synchronized boolean add(double price, long timestamp) {
+            if (retired) return false;
+            Chunk tail = chunks.peekLast();
+            if (tail == null || tail.count == chunkCapacity) {
+                tail = new Chunk(acquireChunk());
+                chunks.addLast(tail);
+            }
+            tail.append(price, timestamp);
+            return true;
+        }
+
+        synchronized void forEachPrice(long fromTimestamp, DoubleConsumer priceConsumer) {
+            for (Chunk chunk : chunks) {
+                if (chunk.maxTimestamp >= fromTimestamp) chunk.forEachPrice(fromTimestamp, priceConsumer);
+            }
+        }
+
+        /**
+         * Releases the chunks whose ticks all expired. Retires the chain once it is empty.
+         * @return number of ticks released
+         */
+        synchronized long expire(long fromTimestamp, String instrument, ExpiredTickConsumer expiredTickConsumer) {
+            long released = 0;
+            Iterator<Chunk> iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                Chunk chunk = iterator.next();
+                if (chunk.maxTimestamp >= fromTimestamp) continue;
+                iterator.remove();
+                chunk.forEachTick(instrument, expiredTickConsumer);
+                released += chunk.count;
+                releaseChunk(chunk.buffer);
+            }
+            if (chunks.isEmpty()) retired = true;
+            return released;
+        }
+
+        synchronized boolean isRetired() {
+            return retired;
+        }
+    }
+
+
+    private static final class Chunk {
+
+        private final ByteBuffer buffer;
+        private int count;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void append(double price, long timestamp) {
+            int offset = count * RECORD_SIZE;
+            buffer.putLong(offset, timestamp);
+            buffer.putDouble(offset + PRICE_OFFSET, price);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            count++;
+        }
+
+        private void forEachPrice(long fromTimestamp, DoubleConsumer priceConsumer) {
+            for (int offset = 0, end = count * RECORD_SIZE; offset < end; offset += RECORD_SIZE) {
+                if (fromTimestamp <= buffer.getLong(offset)) priceConsumer.accept(buffer.getDouble(offset + PRICE_OFFSET));
+            }
+        }
+
+        private void forEachTick(String instrument, ExpiredTickConsumer tickConsumer) {
+            for (int offset = 0, end = count * RECORD_SIZE; offset < end; offset += RECORD_SIZE) {
+                tickConsumer.accept(instrument, buffer.getDouble(offset + PRICE_OFFSET), buffer.getLong(offset));
+            }
+        }
+    }
+}
@@ -1,56 +1,214 @@
 package com.idx.tick.service;
 
 import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Candle;
 import com.idx.tick.model.Stat;
 import com.idx.tick.model.Tick;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.util.Collections;
 import java.util.DoubleSummaryStatistics;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Component
 public class PriceAggregationService {
 
-    @Getter
-    private final List<Tick> ticks = new CopyOnWriteArrayList<>();
-    private final Stat overallStat = new Stat();
+    private TickWindowStore tickWindowStore;
+    // Replaced, never mutated, so that readers always see a consistent stat
+    private volatile Stat overallStat = new Stat();
     private final Map<String, AtomicReference<Stat>> instrumentStatMap = new ConcurrentHashMap<>();
+    private final AtomicLong statVersionSequence = new AtomicLong();
+    private final Map<String, CandleSeries[]> instrumentCandleMap = new ConcurrentHashMap<>();
+    private final Map<String, Long> instrumentIdleSinceMap = new ConcurrentHashMap<>();
+    private TickDeduplicationFilter tickDeduplicationFilter;
+    private final LongAdder duplicateTickCount = new LongAdder();
+    private final LongAdder staleTickCount = new LongAdder();
+    private final AtomicLong reportedStaleTickCount = new AtomicLong();
+
+    @Autowired(required = false)
+    private List<InstrumentStatListener> instrumentStatListeners = Collections.emptyList();
+
+    @Autowired(required = false)
+    private TickArchive tickArchive;
+
+    @Autowired(required = false)
+    private TickClock tickClock;
 
 
     @Value("#{T(java.lang.Long).valueOf('${sliding.interval}')}")
     private long slidingIntervalInMs;
 
+    @Value("${tick.clock.type:system}")
+    private String tickClockType;
+
+    @Value("${tick.clock.resolution:10}")
+    private long tickClockResolutionInMs;
+
+    @Value("${tick.store.type:heap}")
+    private String tickStoreType;
+
+    @Value("${tick.store.offheap.chunk.size:256}")
+    private int offHeapChunkSize;
+
+    @Value("${tick.store.offheap.max.pooled.chunks:1024}")
+    private int offHeapMaxPooledChunks;
+
+    @Value("${tick.dedup.enabled:false}")
+    private boolean tickDeduplicationEnabled;
+
+    @Value("${tick.dedup.partitions:4}")
+    private int tickDeduplicationPartitions;
+
+    @Value("${tick.dedup.expected.ticks:1000000}")
+    private long tickDeduplicationExpectedTicks;
+
+    @Value("${tick.dedup.false.positive.rate:0.0001}")
+    private double tickDeduplicationFalsePositiveRate;
+
+    @Value("${instrument.eviction.grace.period:300000}")
+    private long evictionGracePeriodInMs;
+
+    @Value("${candle.resolutions:1000,10000,60000}")
+    private long[] candleResolutionsInMs;
+
+    @Value("${candle.capacity:120}")
+    private int candleCapacity;
+
+
+    /**
+     * Validates the configuration first, then creates the clock, the window store and the deduplication filter
+     */
+    @PostConstruct
+    public void init() {
+        validateCandleConfiguration();
+        initTickClock();
+        initTickWindowStore();
+        initTickDeduplicationFilter();
+    }
+
+    @PreDestroy
+    public void closeTickClock() {
+        if (tickClock instanceof CachedTickClock) ((CachedTickClock) tickClock).close();
+    }
+
+    private void initTickClock() {
+        if (tickClock != null) {
+            log.info("Using tick clock {}", tickClock.getClass().getSimpleName());
+            return;
+        }
+        if ("cached".equalsIgnoreCase(tickClockType)) {
+            Assert.isTrue(tickClockResolutionInMs > 0, "Tick clock resolution must be greater than 0");
+            tickClock = new CachedTickClock(tickClockResolutionInMs);
+        } else {
+            Assert.isTrue("system".equalsIgnoreCase(tickClockType), "Unknown tick clock type " + tickClockType);
+            tickClock = System::currentTimeMillis;
+        }
+        log.info("Using {} tick clock", tickClockType);
+    }
+
+    private void validateCandleConfiguration() {
+        Assert.isTrue(candleResolutionsInMs.length > 0, "At least one candle resolution must be configured");
+        for (long candleResolutionInMs : candleResolutionsInMs) {
+            Assert.isTrue(candleResolutionInMs > 0 && candleResolutionInMs <= Integer.MAX_VALUE,
+                    "Candle resolution must be between 1 and " + Integer.MAX_VALUE + " ms, got " + candleResolutionInMs);
+        }
+        Assert.isTrue(candleCapacity > 0, "Candle capacity must be greater than 0");
+    }
+
+    private void initTickWindowStore() {
+        if ("off-heap".equalsIgnoreCase(tickStoreType)) {
+            Assert.isTrue(offHeapChunkSize > 0, "Off-heap chunk size must be greater than 0");
+            Assert.isTrue(offHeapMaxPooledChunks > 0, "Off-heap max pooled chunks must be greater than 0");
+            tickWindowStore = new OffHeapTickWindowStore(offHeapChunkSize, offHeapMaxPooledChunks);
+        } else {
+            Assert.isTrue("heap".equalsIgnoreCase(tickStoreType), "Unknown tick store type " + tickStoreType);
+            tickWindowStore = new HeapTickWindowStore();
+        }
+        log.info("Using {} tick window store", tickStoreType);
+    }
+
+    private void initTickDeduplicationFilter() {
+        if (! tickDeduplicationEnabled) return;
+        Assert.isTrue(tickDeduplicationPartitions > 0, "Tick deduplication partitions must be greater than 0");
+        Assert.isTrue(tickDeduplicationFalsePositiveRate > 0 && tickDeduplicationFalsePositiveRate < 1,
+                "Tick deduplication false positive rate must be between 0 and 1");
+        tickDeduplicationFilter = new TickDeduplicationFilter(slidingIntervalInMs, tickDeduplicationPartitions,
+                tickDeduplicationExpectedTicks, tickDeduplicationFalsePositiveRate);
+        log.info("Deduplicating ticks over {} partitions of the sliding interval", tickDeduplicationPartitions);
+    }
+
 
     /**
-     * Adds the tick to the list if valid and does the price aggregations
+     * Adds the tick to the window store if valid and does the price aggregations.
+     * When deduplication is enabled, a tick already added in the sliding interval is counted and dropped.
      * @param tick Tick
      * @throws TickOlderThanAllowedDurationException if tick is older than the allowed time duration
      */
     public void processTick(Tick tick) throws TickOlderThanAllowedDurationException {
         Assert.notNull(tick, "Tick passed is null");
+        Assert.notNull(tick.getPrice(), "Tick price passed is null");
+        Assert.notNull(tick.getTimestamp(), "Tick timestamp passed is null");
+
+        processTick(tick.getInstrument(), tick.getPrice(), tick.getTimestamp());
+    }
 
-        if (! didTickHappenInPastOf(System.currentTimeMillis(), tick.getTimestamp())) {
-            throw new TickOlderThanAllowedDurationException(tick, slidingIntervalInMs);
+    /**
+     * Primitive variant of {@link #processTick(Tick)}
+     * @param instrument identifier for the instrument
+     * @param price tick price
+     * @param timestamp tick timestamp in milliseconds
+     * @throws TickOlderThanAllowedDurationException if tick is older than the allowed time duration
+     */
+    public void processTick(String instrument, double price, long timestamp) throws TickOlderThanAllowedDurationException {
+        if (! offerTick(instrument, price, timestamp)) {
+            throw new TickOlderThanAllowedDurationException(new Tick(instrument, price, timestamp), slidingIntervalInMs);
         }
+    }
 
-        ticks.add(tick);
-        log.debug("Added tick {} at {}", tick, System.currentTimeMillis());
+    /**
+     * Variant of {@link #processTick(String, double, long)} used by the ingest path, which rejects a tick older than
+     * the allowed time duration without building an exception. Rejections are only counted
+     * @return false if the tick was rejected as older than the allowed time duration
+     */
+    public boolean offerTick(String instrument, double price, long timestamp) {
+        Assert.hasText(instrument, "Instrument passed is either null or empty");
 
-        String instrument = tick.getInstrument();
-        Stat newInstrumentStat = aggregateTickStats(instrument);
-        updateStatForInstrument(instrument, newInstrumentStat);
+        long currentTimestamp = tickClock.currentTimeMillis();
+        if (! didTickHappenInPastOf(currentTimestamp, timestamp)) {
+            staleTickCount.increment();
+            return false;
+        }
+        if (tickDeduplicationFilter != null && tickDeduplicationFilter.isDuplicate(instrument, price, timestamp, currentTimestamp)) {
+            duplicateTickCount.increment();
+            if (log.isDebugEnabled()) log.debug("Dropped duplicate tick of {} with price {} and timestamp {}", instrument, price, timestamp);
+            return true;
+        }
+
+        tickWindowStore.add(instrument, price, timestamp);
+        // Guarded as the price and timestamp would be boxed on every tick
+        if (log.isDebugEnabled()) log.debug("Added tick of {} with price {} and timestamp {}", instrument, price, timestamp);
+
+        aggregateAndUpdateStatForInstrument(instrument);
+        // Only after the aggregation, so that an instrument evicted concurrently gets fresh candles
+        updateCandlesForInstrument(instrument, price, timestamp, currentTimestamp);
+        return true;
     }
 
     /**
@@ -58,10 +216,11 @@ public class PriceAggregationService {
      * @return Optional of price statistics if it was last updated in the current sliding time interval. Else empty
      */
     public Optional<Stat> getOverallStat() {
-        if (ObjectUtils.isEmpty(overallStat.getLastUpdatedTs())) return Optional.empty();
+        Stat currentOverallStat = overallStat;
+        if (ObjectUtils.isEmpty(currentOverallStat.getLastUpdatedTs())) return Optional.empty();
 
-        long currentTimestamp = System.currentTimeMillis();
-        return (currentTimestamp - slidingIntervalInMs) <= overallStat.getLastUpdatedTs() ? Optional.of(overallStat) : Optional.empty();
+        long currentTimestamp = tickClock.currentTimeMillis();
+        return (currentTimestamp - slidingIntervalInMs) <= currentOverallStat.getLastUpdatedTs() ? Optional.of(currentOverallStat) : Optional.empty();
     }
 
 
@@ -75,36 +234,154 @@ public class PriceAggregationService {
         Stat instrumentStat = instrumentStatMap.getOrDefault(instrument, new AtomicReference<>()).get();
         if (ObjectUtils.isEmpty(instrumentStat) || ObjectUtils.isEmpty(instrumentStat.getLastUpdatedTs())) return Optional.empty();
 
-        long currentTimestamp = System.currentTimeMillis();
+        long currentTimestamp = tickClock.currentTimeMillis();
         return (currentTimestamp - slidingIntervalInMs) <= instrumentStat.getLastUpdatedTs() ? Optional.of(instrumentStat) : Optional.empty();
     }
 
 
+    /**
+     * Fetches the OHLC candles of an instrument at one of the configured resolutions, maintained incrementally on ingest
+     * @return candles still held in the bounded ring of the instrument, oldest first. Empty if no tick was added yet
+     */
+    public List<Candle> getCandlesForInstrument(String instrument, long resolutionInMs) {
+        Assert.hasText(instrument, "Instrument passed is either null or empty");
+        int resolutionIndex = indexOfCandleResolution(resolutionInMs);
+        Assert.isTrue(resolutionIndex >= 0, "Candle resolution of " + resolutionInMs + " milliseconds is not configured");
+
+        CandleSeries[] candleSeries = instrumentCandleMap.get(instrument);
+        return candleSeries == null ? Collections.emptyList() : candleSeries[resolutionIndex].getCandles();
+    }
+
+    /**
+     * @return configured candle resolutions in milliseconds
+     */
+    public long[] getCandleResolutionsInMs() {
+        return candleResolutionsInMs.clone();
+    }
+
+
+    /**
+     * Drops all the ticks held in the window store
+     */
+    public void clearTicks() {
+        tickWindowStore.clear();
+    }
+
+    /**
+     * @return number of ticks held in the window store, including expired ones not released yet
+     */
+    public long getStoredTickCount() {
+        return tickWindowStore.size();
+    }
+
+    /**
+     * @return number of instruments currently holding per-instrument state
+     */
+    public int getLiveInstrumentCount() {
+        return instrumentStatMap.size();
+    }
+
+    /**
+     * @return whether duplicate ticks are dropped on ingest
+     */
+    public boolean isTickDeduplicationEnabled() {
+        return tickDeduplicationFilter != null;
+    }
+
+    /**
+     * @return number of ticks rejected as older than the allowed time duration since start up
+     */
+    public long getStaleTickCount() {
+        return staleTickCount.sum();
+    }
+
+    /**
+     * @return number of duplicate ticks dropped since start up
+     */
+    public long getDuplicateTickCount() {
+        return duplicateTickCount.sum();
+    }
+
+
+    /**
+     * Releases the ticks which slid out of the window, archiving them if the archive is enabled,
+     * re-aggregates the stats of all instruments, and evicts the instruments whose window has been empty
+     * for longer than the eviction grace period.
+     */
     @Scheduled(cron = "*/10 * * * * *")
     public void regularPriceAggregationCleanUpJob(){
+        long currentTimestamp = tickClock.currentTimeMillis();
+        if (tickArchive == null) {
+            tickWindowStore.expire(currentTimestamp - slidingIntervalInMs);
+        } else {
+            tickWindowStore.expire(currentTimestamp - slidingIntervalInMs, tickArchive::append);
+            tickArchive.flush();
+        }
+
+        AtomicInteger evictedInstrumentCount = new AtomicInteger();
         instrumentStatMap.keySet().forEach(instrument -> {
-            // if (System.currentTimeMillis() - instrumentStatMap.get(instrument).get().getLastUpdatedTs() > slidingIntervalInMs)
-                updateStatForInstrument(instrument, aggregateTickStats(instrument));
+            if (aggregateAndEvictIfIdle(instrument, currentTimestamp)) evictedInstrumentCount.incrementAndGet();
         });
+        if (evictedInstrumentCount.get() > 0) {
+            log.info("Evicted {} idle instruments, {} instruments left", evictedInstrumentCount.get(), instrumentStatMap.size());
+        }
+        reportStaleTicks();
+    }
+
+
+    /**
+     * Aggregation and publication happen under the same lock. Otherwise a writer holding an older aggregation
+     * could publish it after a newer one and leave a stale stat behind until the next clean-up run.
+     */
+    private synchronized void aggregateAndUpdateStatForInstrument(String instrument) {
+        updateStatForInstrument(instrument, aggregateTickStats(instrument));
+    }
+
+
+    /**
+     * Runs under the aggregation lock, so a tick added concurrently is either part of the aggregation,
+     * which keeps the instrument alive, or aggregated after the eviction, which recreates its state.
+     * @return true if the instrument was evicted
+     */
+    private synchronized boolean aggregateAndEvictIfIdle(String instrument, long currentTimestamp) {
+        aggregateAndUpdateStatForInstrument(instrument);
+        if (instrumentStatMap.get(instrument).get().getCount() > 0) {
+            instrumentIdleSinceMap.remove(instrument);
+            return false;
+        }
+
+        long idleSince = instrumentIdleSinceMap.computeIfAbsent(instrument, key -> currentTimestamp);
+        if (currentTimestamp - idleSince < evictionGracePeriodInMs) return false;
+
+        log.debug("Evicting instrument {} idle since {}", instrument, idleSince);
+        instrumentStatMap.remove(instrument);
+        instrumentCandleMap.remove(instrument);
+        instrumentIdleSinceMap.remove(instrument);
+        instrumentStatListeners.forEach(listener -> listener.onInstrumentRemoved(instrument));
+        return true;
     }
 
 
     private synchronized Stat aggregateTickStats(String instrument) {
         Assert.hasText(instrument, "Instrument passed is either null or empty");
         log.debug("Starting the price aggregation for instrument: {}", instrument);
-        long currentTimestamp = System.currentTimeMillis();
+        long currentTimestamp = tickClock.currentTimeMillis();
 
-        DoubleSummaryStatistics dss = ticks.stream()
-                .filter(tick -> didTickHappenInPastOf(currentTimestamp, tick.getTimestamp()))
-                .mapToDouble(Tick::getPrice)
-                .summaryStatistics();
-        overallStat.update(dss.getAverage(), dss.getMax(), dss.getMin(), dss.getCount(), currentTimestamp);
+        long windowStartTimestamp = currentTimestamp - slidingIntervalInMs;
 
-        dss = ticks.stream()
-                .filter(tick -> instrument.equals(tick.getInstrument())  &&  didTickHappenInPastOf(currentTimestamp, tick.getTimestamp()))
-                .mapToDouble(Tick::getPrice)
-                .summaryStatistics();
-        return new Stat(dss.getAverage(), dss.getMax(), dss.getMin(), dss.getCount(), currentTimestamp);
+        DoubleSummaryStatistics dss = new DoubleSummaryStatistics();
+        tickWindowStore.forEachPrice(windowStartTimestamp, dss);
+        overallStat = new Stat(dss.getAverage(), dss.getMax(), dss.getMin(), dss.getCount(), currentTimestamp);
+
+        dss = new DoubleSummaryStatistics();
+        tickWindowStore.forEachPrice(instrument, windowStartTimestamp, dss);
+        Stat currentInstrumentStat = instrumentStatMap.getOrDefault(instrument, new AtomicReference<>()).get();
+        Stat newInstrumentStat = new Stat(dss.getAverage(), dss.getMax(), dss.getMin(), dss.getCount(), currentTimestamp, statVersionSequence.incrementAndGet());
+        if (newInstrumentStat.hasSameValuesAs(currentInstrumentStat)) {
+            // Unchanged values keep their version so that cached responses stay valid
+            newInstrumentStat = new Stat(dss.getAverage(), dss.getMax(), dss.getMin(), dss.getCount(), currentTimestamp, currentInstrumentStat.getVersion());
+        }
+        return newInstrumentStat;
     }
 
 
@@ -113,13 +390,50 @@ public class PriceAggregationService {
         Assert.notNull(newInstrumentStat, "NewInstrumentStat passed is null");
 
         Stat oldInstrumentStat = instrumentStatMap.getOrDefault(instrument, new AtomicReference<>()).get();
+        boolean updated = true;
         if (instrumentStatMap.containsKey(instrument)){
-            instrumentStatMap.get(instrument).compareAndSet(oldInstrumentStat, newInstrumentStat);
+            updated = instrumentStatMap.get(instrument).compareAndSet(oldInstrumentStat, newInstrumentStat);
 
         } else {
             if (instrumentStatMap.putIfAbsent(instrument, new AtomicReference<>(newInstrumentStat)) != null) {
-                instrumentStatMap.get(instrument).compareAndSet(oldInstrumentStat, newInstrumentStat);
+                updated = instrumentStatMap.get(instrument).compareAndSet(oldInstrumentStat, newInstrumentStat);
+            }
+        }
+
+        if (updated && (oldInstrumentStat == null || oldInstrumentStat.getVersion() != newInstrumentStat.getVersion())) {
+            instrumentStatListeners.forEach(listener -> listener.onStatChanged(instrument, newInstrumentStat));
+        }
+    }
+
+
+    private void updateCandlesForInstrument(String instrument, double price, long timestamp, long currentTimestamp) {
+        CandleSeries[] candleSeries = instrumentCandleMap.computeIfAbsent(instrument, key -> {
+            CandleSeries[] series = new CandleSeries[candleResolutionsInMs.length];
+            for (int i = 0; i < series.length; i++) {
+                series[i] = new CandleSeries(candleResolutionsInMs[i], candleCapacity);
             }
+            return series;
+        });
+        for (CandleSeries series : candleSeries) {
+            series.update(price, timestamp, currentTimestamp);
+        }
+    }
+
+
+    private int indexOfCandleResolution(long resolutionInMs) {
+        for (int i = 0; i < candleResolutionsInMs.length; i++) {
+            if (candleResolutionsInMs[i] == resolutionInMs) return i;
+        }
+        return -1;
+    }
+
+
+    private void reportStaleTicks() {
+        long staleTicks = staleTickCount.sum();
+        long newStaleTicks = staleTicks - reportedStaleTickCount.getAndSet(staleTicks);
+        if (newStaleTicks > 0) {
+            log.info("Rejected {} ticks older than allowed duration of {} milliseconds since the last clean-up, {} in total",
+                    newStaleTicks, slidingIntervalInMs, staleTicks);
         }
     }
 
@@ -0,0 +1,82 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Stat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Ranking of instruments by a score derived from their stat, kept in a skip list ordered by descending score.
+ * Updating an instrument costs O(log I) and reading the top N costs O(N + log I) for I ranked instruments.
+ * Instruments without ticks in the window are not ranked.
+ */
+final class StatRankingIndex {
+
+    private static final Comparator<Entry> BY_SCORE_DESCENDING = Comparator
+            .comparingDouble((Entry entry) -> entry.score).reversed()
+            .thenComparing(entry -> entry.instrument);
+
+    private final ToDoubleFunction<Stat> scoreFunction;
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(BY_SCORE_DESCENDING);
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+
+    StatRankingIndex(ToDoubleFunction<Stat> scoreFunction) {
+        this.scoreFunction = scoreFunction;
+    }
+
+
+    void update(String instrument, Stat stat) {
+        entries.compute(instrument, (key, oldEntry) -> {
+            // Listeners may be called out of order by concurrent writers; never go back to an older version
+            if (oldEntry != null && oldEntry.stat.getVersion() > stat.getVersion()) return oldEntry;
+            if (oldEntry != null) ranking.remove(oldEntry);
+            if (stat.getCount() == 0) return null;
+
+            Entry newEntry = new Entry(instrument, scoreFunction.applyAsDouble(stat), stat);
+            ranking.add(newEntry);
+            return newEntry;
+        });
+    }
+
+    void remove(String instrument) {
+        entries.computeIfPresent(instrument, (key, oldEntry) -> {
+            ranking.remove(oldEntry);
+            return null;
+        });
+    }
+
+
+    /**
+     * @return up to limit entries, highest score first
+     */
+    List<Entry> top(int limit) {
+        List<Entry> top = new ArrayList<>(Math.min(limit, entries.size()));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (top.size() < limit && iterator.hasNext()) {
+            top.add(iterator.next());
+        }
+        return top;
+    }
+
+
+    static final class Entry {
+
+        final String instrument;
+        final double score;
+        final Stat stat;
+
+        private Entry(String instrument, double score, Stat stat) {
+            this.instrument = instrument;
+            this.score = score;
+            this.stat = stat;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.idx.tick.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Archives the ticks sliding out of the window on local disk, for post-trade analysis.
+ * Ticks handed over by the clean-up job are buffered per instrument as primitives, then appended on flush
+ * to one file per instrument as columnar blocks of tick.archive.block.size ticks (see {@link TickBlockCodec}).
+ * A partial block stays buffered until it fills up or its oldest tick waited for tick.archive.max.pending.age,
+ * so that quiet instruments still get blocks long enough to compress. Everything is written on shutdown.
+ * Archived ticks are read back with {@link #scan}, which decodes one block at a time from a reused buffer.
+ * A block left torn by a failed write or a crash is truncated before more blocks are appended behind it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "tick.archive.enabled", havingValue = "true")
+public class TickArchive {
+
+    private static final String FILE_EXTENSION = ".ticks";
+
+    private final Map<String, PendingTicks> pendingTicksMap = new HashMap<>();
+    private Path archiveDirectory;
+
+    @Value("${tick.archive.directory:tick-archive}")
+    private String archiveDirectoryName;
+
+    @Value("${tick.archive.block.size:4096}")
+    private int blockSize;
+
+    @Value("${tick.archive.max.pending.age:60000}")
+    private long maxPendingAgeInMs;
+
+
+    @PostConstruct
+    public void initArchiveDirectory() throws IOException {
+        Assert.isTrue(blockSize > 0, "Tick archive block size must be greater than 0");
+        Assert.isTrue(maxPendingAgeInMs >= 0, "Tick archive max pending age must not be negative");
+        archiveDirectory = Files.createDirectories(Paths.get(archiveDirectoryName));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(archiveDirectory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                truncateTornTail(file);
+            }
+        }
+        log.info("Archiving expired ticks to {}", archiveDirectory.toAbsolutePath());
+    }
+
+
+    /**
+     * Buffers an expired tick until a {@link #flush()} writes it
+     */
+    public synchronized void append(String instrument, double price, long timestamp) {
+        pendingTicksMap.computeIfAbsent(instrument, key -> new PendingTicks()).add(price, timestamp);
+    }
+
+    /**
+     * Writes the full blocks of buffered ticks to the archive, and the partial blocks which waited for too long.
+     * Ticks of an instrument which failed to be written are dropped
+     */
+    public synchronized void flush() {
+        flush(System.currentTimeMillis() - maxPendingAgeInMs);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param pendingSinceThreshold a partial block is written if its oldest tick was buffered no later than this
+     */
+    private void flush(long pendingSinceThreshold) {
+        Iterator<Map.Entry<String, PendingTicks>> iterator = pendingTicksMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingTicks> entry = iterator.next();
+            PendingTicks pendingTicks = entry.getValue();
+            int count = pendingTicks.pendingSince <= pendingSinceThreshold
+                    ? pendingTicks.count : pendingTicks.count / blockSize * blockSize;
+            if (count == 0) continue;
+            try {
+                write(entry.getKey(), pendingTicks, count);
+            } catch (IOException ioe) {
+                log.error("Failed to archive {} ticks of instrument {}", count, entry.getKey(), ioe);
+            }
+            pendingTicks.removeFirst(count);
+            if (pendingTicks.count == 0) iterator.remove();
+        }
+    }
+
+
+    /**
+     * Streams the archived ticks of an instrument whose timestamp is in [fromTimestamp, toTimestamp], in archiving order,
+     * followed by the ticks still buffered for the next flush.
+     * Blocks outside of the range are skipped on their header, the others are decoded without creating tick objects.
+     * @return number of ticks fed to the consumer
+     */
+    public long scan(String instrument, long fromTimestamp, long toTimestamp, ArchivedTickConsumer tickConsumer) throws IOException {
+        Assert.hasText(instrument, "Instrument passed is either null or empty");
+        Assert.notNull(tickConsumer, "Tick consumer passed is null");
+        long matched = 0;
+        Path file = fileOf(instrument);
+        if (Files.exists(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                matched += scan(instrument, channel, fromTimestamp, toTimestamp, tickConsumer);
+            }
+        }
+        return matched + scanPendingTicks(instrument, fromTimestamp, toTimestamp, tickConsumer);
+    }
+
+
+    private long scan(String instrument, FileChannel channel, long fromTimestamp, long toTimestamp, ArchivedTickConsumer tickConsumer) throws IOException {
+        // Read up to the size at opening, a block being appended meanwhile is left out
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(TickBlockCodec.HEADER_SIZE);
+        ByteBuffer block = ByteBuffer.allocate(0);
+        long matched = 0;
+        long position = 0;
+        long blockLength;
+        while ((blockLength = readBlockLength(channel, position, size, header)) > 0) {
+            if (TickBlockCodec.maxTimestamp(header, 0) >= fromTimestamp
+                    && TickBlockCodec.minTimestamp(header, 0) <= toTimestamp) {
+                // Block lengths are bounded by readBlockLength, the buffer is only grown for a longer block
+                if (block.capacity() < blockLength) block = ByteBuffer.allocate((int) blockLength);
+                block.clear().limit((int) blockLength);
+                if (! readFully(channel, block, position)) break;
+                matched += TickBlockCodec.decode(block, 0, fromTimestamp, toTimestamp, tickConsumer);
+            }
+            position += blockLength;
+        }
+        if (position < size) log.warn("Skipped {} unreadable bytes at the end of the tick archive of instrument {}", size - position, instrument);
+        return matched;
+    }
+
+    private synchronized long scanPendingTicks(String instrument, long fromTimestamp, long toTimestamp, ArchivedTickConsumer tickConsumer) {
+        PendingTicks pendingTicks = pendingTicksMap.get(instrument);
+        if (pendingTicks == null) return 0;
+        long matched = 0;
+        for (int i = 0; i < pendingTicks.count; i++) {
+            long timestamp = pendingTicks.timestamps[i];
+            if (fromTimestamp <= timestamp && timestamp <= toTimestamp) {
+                tickConsumer.accept(timestamp, pendingTicks.prices[i]);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+
+    private void write(String instrument, PendingTicks pendingTicks, int tickCount) throws IOException {
+        Path file = fileOf(instrument);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long size = channel.size();
+            try {
+                for (int from = 0; from < tickCount; from += blockSize) {
+                    int count = Math.min(blockSize, tickCount - from);
+                    // Readers leave out a block which is not completely written yet
+                    ByteBuffer block = ByteBuffer.wrap(TickBlockCodec.encode(pendingTicks.timestamps, pendingTicks.prices, from, count));
+                    while (block.hasRemaining()) {
+                        channel.write(block);
+                    }
+                }
+            } catch (IOException ioe) {
+                // Drops the blocks of this flush, so the next one is not appended behind a torn block
+                channel.truncate(size);
+                throw ioe;
+            }
+        }
+        log.debug("Archived {} ticks of instrument {}", tickCount, instrument);
+    }
+
+    /**
+     * Truncates the file after its last complete block, dropping a block torn by a crash while it was written
+     */
+    private void truncateTornTail(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(TickBlockCodec.HEADER_SIZE);
+            long position = 0;
+            long blockLength;
+            while ((blockLength = readBlockLength(channel, position, size, header)) > 0) {
+                position += blockLength;
+            }
+            if (position < size) {
+                log.warn("Truncating {} unreadable bytes at the end of tick archive {}", size - position, file);
+                channel.truncate(position);
+            }
+        }
+    }
+
+    /**
+     * Reads the header of the block starting at the position of the channel into the header buffer
+     * @return byte length of the block, -1 if the channel does not hold all of it before size or if it is corrupted
+     */
+    private static long readBlockLength(FileChannel channel, long position, long size, ByteBuffer header) throws IOException {
+        if (size - position < TickBlockCodec.HEADER_SIZE) return -1;
+        header.clear();
+        if (! readFully(channel, header, position)) return -1;
+        long blockLength = TickBlockCodec.declaredBlockLength(header, 0);
+        return size - position < blockLength || blockLength > Integer.MAX_VALUE ? -1 : blockLength;
+    }
+
+    /**
+     * Fills the remaining of the buffer with the bytes of the channel from the position on
+     * @return false if the channel ended before
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) return false;
+        }
+        return true;
+    }
+
+    private Path fileOf(String instrument) {
+        return archiveDirectory.resolve(URLEncoder.encode(instrument, StandardCharsets.UTF_8) + FILE_EXTENSION);
+    }
+
+
+    @FunctionalInterface
+    public interface ArchivedTickConsumer {
+
+        void accept(long timestamp, double price);
+    }
+
+
+    private static final class PendingTicks {
+
+        private long[] timestamps = new long[16];
+        private double[] prices = new double[16];
+        private int count;
+        // When the oldest buffered tick was appended
+        private long pendingSince;
+
+        private void add(double price, long timestamp) {
+            if (count == 0) pendingSince = System.currentTimeMillis();
+            if (count == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+                prices = Arrays.copyOf(prices, count * 2);
+            }
+            timestamps[count] = timestamp;
+            prices[count] = price;
+            count++;
+        }
+
+        private void removeFirst(int removed) {
+            System.arraycopy(timestamps, removed, timestamps, 0, count - removed);
+            System.arraycopy(prices, removed, prices, 0, count - removed);
+            // The remaining ticks keep the time of the oldest removed one, so none waits for longer than the max age
+            count -= removed;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.idx.tick.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Columnar encoding of a block of ticks of one instrument, as written to the tick archive.
+ *  header     magic, tick count, min and max timestamp, byte length of each column
+ *  timestamps first timestamp, then zigzag varints of the delta of deltas, one byte for ticks at a steady pace
+ *  prices     bit stream of the XOR of each price with the previous one (Gorilla encoding), one bit for a repeated price
+ * Decoding walks both columns in lockstep and hands out primitives, no tick object is created.
+ */
+final class TickBlockCodec {
+
+    static final int MAGIC = 0x544B4131;
+    static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES;
+
+
+    private TickBlockCodec() {
+    }
+
+
+    /**
+     * Encodes count ticks of the arrays starting at index from
+     * @return the encoded block, header included
+     */
+    static byte[] encode(long[] timestamps, double[] prices, int from, int count) {
+        ByteSink timestampColumn = new ByteSink(count * 2 + Long.BYTES);
+        ByteSink priceColumn = new ByteSink(count * 2 + Long.BYTES);
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+
+        long previousTimestamp = 0;
+        long previousDelta = 0;
+        long previousPriceBits = 0;
+        int previousLeadingZeros = -1;
+        int previousTrailingZeros = 0;
+        for (int i = 0; i < count; i++) {
+            long timestamp = timestamps[from + i];
+            long priceBits = Double.doubleToRawLongBits(prices[from + i]);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+
+            if (i == 0) {
+                timestampColumn.writeBits(timestamp, Long.SIZE);
+                priceColumn.writeBits(priceBits, Long.SIZE);
+            } else {
+                long delta = timestamp - previousTimestamp;
+                timestampColumn.writeVarLong(zigzag(delta - previousDelta));
+                previousDelta = delta;
+
+                long xor = priceBits ^ previousPriceBits;
+                if (xor == 0) {
+                    priceColumn.writeBits(0, 1);
+                } else {
+                    int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                    int trailingZeros = Long.numberOfTrailingZeros(xor);
+                    if (previousLeadingZeros >= 0 && leadingZeros >= previousLeadingZeros && trailingZeros >= previousTrailingZeros) {
+                        // Meaningful bits fit in the window of the previous value
+                        priceColumn.writeBits(0b10, 2);
+                        priceColumn.writeBits(xor >>> previousTrailingZeros, Long.SIZE - previousLeadingZeros - previousTrailingZeros);
+                    } else {
+                        int meaningfulBits = Long.SIZE - leadingZeros - trailingZeros;
+                        priceColumn.writeBits(0b11, 2);
+                        priceColumn.writeBits(leadingZeros, 5);
+                        priceColumn.writeBits(meaningfulBits - 1, 6);
+                        priceColumn.writeBits(xor >>> trailingZeros, meaningfulBits);
+                        previousLeadingZeros = leadingZeros;
+                        previousTrailingZeros = trailingZeros;
+                    }
+                }
+            }
+            previousTimestamp = timestamp;
+            previousPriceBits = priceBits;
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + timestampColumn.length() + priceColumn.length());
+        block.putInt(MAGIC).putInt(count).putLong(minTimestamp).putLong(maxTimestamp)
+                .putInt(timestampColumn.length()).putInt(priceColumn.length());
+        block.put(timestampColumn.bytes(), 0, timestampColumn.length());
+        block.put(priceColumn.bytes(), 0, priceColumn.length());
+        return block.array();
+    }
+
+
+    /**
+     * @return byte length of the block starting at the position of the buffer, -1 if the buffer does not hold all of it
+     * or if it does not start with a valid header
+     */
+    static long blockLength(ByteBuffer buffer, int position) {
+        if (buffer.limit() - position < HEADER_SIZE) return -1;
+        long length = declaredBlockLength(buffer, position);
+        return buffer.limit() - position < length ? -1 : length;
+    }
+
+    /**
+     * @return byte length of the block as declared by the header starting at the position of the buffer,
+     * -1 if the header is not valid
+     */
+    static long declaredBlockLength(ByteBuffer header, int position) {
+        if (header.getInt(position) != MAGIC) return -1;
+        int timestampColumnLength = timestampColumnLength(header, position);
+        int priceColumnLength = priceColumnLength(header, position);
+        if (timestampColumnLength < 0 || priceColumnLength < 0) return -1;
+        return HEADER_SIZE + (long) timestampColumnLength + priceColumnLength;
+    }
+
+    static long minTimestamp(ByteBuffer block, int position) {
+        return block.getLong(position + 2 * Integer.BYTES);
+    }
+
+    static long maxTimestamp(ByteBuffer block, int position) {
+        return block.getLong(position + 2 * Integer.BYTES + Long.BYTES);
+    }
+
+
+    /**
+     * Feeds the ticks of the block starting at the position of the buffer whose timestamp is in [fromTimestamp, toTimestamp]
+     * @return number of ticks fed
+     */
+    static long decode(ByteBuffer block, int position, long fromTimestamp, long toTimestamp, TickArchive.ArchivedTickConsumer tickConsumer) {
+        int count = block.getInt(position + Integer.BYTES);
+        ByteSource timestampColumn = new ByteSource(block, position + HEADER_SIZE);
+        ByteSource priceColumn = new ByteSource(block, position + HEADER_SIZE + timestampColumnLength(block, position));
+
+        long matched = 0;
+        long timestamp = 0;
+        long delta = 0;
+        long priceBits = 0;
+        int leadingZeros = 0;
+        int trailingZeros = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamp = timestampColumn.readBits(Long.SIZE);
+                priceBits = priceColumn.readBits(Long.SIZE);
+            } else {
+                delta += unzigzag(timestampColumn.readVarLong());
+                timestamp += delta;
+
+                if (priceColumn.readBits(1) == 1) {
+                    if (priceColumn.readBits(1) == 1) {
+                        leadingZeros = (int) priceColumn.readBits(5);
+                        trailingZeros = Long.SIZE - leadingZeros - (int) priceColumn.readBits(6) - 1;
+                    }
+                    priceBits ^= priceColumn.readBits(Long.SIZE - leadingZeros - trailingZeros) << trailingZeros;
+                }
+            }
+            if (fromTimestamp <= timestamp && timestamp <= toTimestamp) {
+                tickConsumer.accept(timestamp, Double.longBitsToDouble(priceBits));
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+
+    private static int timestampColumnLength(ByteBuffer block, int position) {
+        return block.getInt(position + 2 * Integer.BYTES + 2 * Long.BYTES);
+    }
+
+    private static int priceColumnLength(ByteBuffer block, int position) {
+        return block.getInt(position + 3 * Integer.BYTES + 2 * Long.BYTES);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    /**
+     * Growable byte array written bit by bit, most significant bit first, or by whole varint bytes
+     */
+    private static final class ByteSink {
+
+        private byte[] bytes;
+        private long bitPosition;
+
+        private ByteSink(int initialCapacity) {
+            bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        private void writeBits(long value, int bitCount) {
+            while (bitCount > 0) {
+                int byteIndex = (int) (bitPosition >>> 3);
+                if (byteIndex == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                int freeBits = 8 - (int) (bitPosition & 7);
+                int written = Math.min(freeBits, bitCount);
+                int chunk = (int) (value >>> (bitCount - written)) & ((1 << written) - 1);
+                bytes[byteIndex] |= chunk << (freeBits - written);
+                bitPosition += written;
+                bitCount -= written;
+            }
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeBits((value & 0x7F) | 0x80, 8);
+                value >>>= 7;
+            }
+            writeBits(value, 8);
+        }
+
+        private byte[] bytes() {
+            return bytes;
+        }
+
+        private int length() {
+            return (int) ((bitPosition + 7) >>> 3);
+        }
+    }
+
+
+    private static final class ByteSource {
+
+        private final ByteBuffer buffer;
+        private final int offset;
+        private long bitPosition;
+
+        private ByteSource(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        private long readBits(int bitCount) {
+            long value = 0;
+            while (bitCount > 0) {
+                int availableBits = 8 - (int) (bitPosition & 7);
+                int read = Math.min(availableBits, bitCount);
+                int currentByte = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+                value = (value << read) | ((currentByte >>> (availableBits - read)) & ((1 << read) - 1));
+                bitPosition += read;
+                bitCount -= read;
+            }
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                long currentByte = readBits(8);
+                value |= (currentByte & 0x7F) << shift;
+                if ((currentByte & 0x80) == 0) return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.idx.tick.service;
+
+/**
+ * Time source of the aggregation engine, in milliseconds since the epoch.
+ * A TickClock bean, if declared, replaces the one configured by tick.clock.type.
+ */
+@FunctionalInterface
+public interface TickClock {
+
+    long currentTimeMillis();
+}
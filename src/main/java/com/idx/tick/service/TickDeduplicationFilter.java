@@ -0,0 +1,135 @@
+package com.idx.tick.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probabilistic detection of ticks published more than once (same instrument, price and timestamp).
+ * Ticks are partitioned by their timestamp into Bloom filters which each cover a slice of the sliding window.
+ * A duplicate always lands in the partition of the original tick, so one filter is checked per tick.
+ * The partitions form a ring allocated upfront, a partition is cleared in place when the window slides onto it.
+ * False positives happen at the configured rate; ticks outside of the ring are never reported as duplicates.
+ */
+final class TickDeduplicationFilter {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long CLEARING = Long.MIN_VALUE + 1;
+
+    private final long partitionSpanInMs;
+    private final int bitCount;
+    private final int hashCount;
+    private final Partition[] partitions;
+
+
+    /**
+     * @param slidingIntervalInMs length of the sliding window
+     * @param partitionCount number of partitions covering the window
+     * @param expectedTicksPerWindow number of distinct ticks expected in the window
+     * @param falsePositiveRate acceptable rate of unique ticks reported as duplicates
+     */
+    TickDeduplicationFilter(long slidingIntervalInMs, int partitionCount, long expectedTicksPerWindow, double falsePositiveRate) {
+        long expectedTicksPerPartition = Math.max(1, expectedTicksPerWindow / partitionCount);
+        long bits = (long) Math.ceil(-expectedTicksPerPartition * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedTicksPerPartition * Math.log(2)));
+        this.partitionSpanInMs = Math.max(1, (slidingIntervalInMs + partitionCount - 1) / partitionCount);
+        // One more partition than the window needs, as the window rarely starts on a partition boundary
+        this.partitions = new Partition[partitionCount + 1];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(bitCount);
+        }
+    }
+
+
+    /**
+     * Records the tick and tells if it was already recorded
+     * @param currentTimestamp current time, ticks too far in the future are not checked
+     * @return true if the tick was most likely seen before
+     */
+    boolean isDuplicate(String instrument, double price, long timestamp, long currentTimestamp) {
+        long bucket = Math.floorDiv(timestamp, partitionSpanInMs);
+        if (bucket > Math.floorDiv(currentTimestamp, partitionSpanInMs) + 1) return false;
+
+        Partition partition = partitionFor(bucket);
+        if (partition == null) return false;
+
+        long hash = hash(instrument, price, timestamp);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        boolean seen = true;
+        for (int i = 1; i <= hashCount; i++) {
+            int combinedHash = hash1 + i * hash2;
+            if (combinedHash < 0) combinedHash = ~combinedHash;
+            seen &= partition.set(combinedHash % bitCount);
+        }
+        return seen;
+    }
+
+
+    /**
+     * The thread moving a partition to a newer bucket clears it, ticks landing on it meanwhile are not checked.
+     * A thread still recording a tick of the older bucket may leave a few bits behind, which only adds false positives.
+     * @return the partition of the bucket, recycling the partition of an older bucket. Null if the bucket is older
+     * than the ring or if its partition is being cleared
+     */
+    private Partition partitionFor(long bucket) {
+        Partition partition = partitions[(int) Math.floorMod(bucket, (long) partitions.length)];
+        while (true) {
+            long partitionBucket = partition.bucket.get();
+            if (partitionBucket == bucket) return partition;
+            if (partitionBucket == CLEARING || partitionBucket > bucket) return null;
+
+            if (partition.bucket.compareAndSet(partitionBucket, CLEARING)) {
+                if (partitionBucket != EMPTY) partition.clear();
+                partition.bucket.set(bucket);
+                return partition;
+            }
+        }
+    }
+
+
+    private static long hash(String instrument, double price, long timestamp) {
+        long hash = instrument.hashCode();
+        hash = mix(hash * 31 + Double.doubleToLongBits(price));
+        hash = mix(hash * 31 + timestamp);
+        return hash;
+    }
+
+    // MurmurHash3 64 bit finalizer
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+
+    private static final class Partition {
+
+        private final AtomicLong bucket = new AtomicLong(EMPTY);
+        private final AtomicLongArray words;
+
+        private Partition(int bitCount) {
+            this.words = new AtomicLongArray((bitCount + 63) >>> 6);
+        }
+
+        private void clear() {
+            for (int i = 0; i < words.length(); i++) {
+                words.set(i, 0);
+            }
+        }
+
+        /**
+         * @return true if the bit was already set
+         */
+        private boolean set(int bit) {
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            long word = words.get(index);
+            if ((word & mask) != 0) return true;
+            return (words.getAndAccumulate(index, mask, (current, bitMask) -> current | bitMask) & mask) != 0;
+        }
+    }
+}
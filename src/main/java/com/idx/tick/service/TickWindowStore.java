@@ -0,0 +1,48 @@
+package com.idx.tick.service;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Storage of the ticks of the sliding window, read by the aggregation engine as primitive prices.
+ * Implementations must allow concurrent adds while the window is being read or expired.
+ */
+interface TickWindowStore {
+
+    void add(String instrument, double price, long timestamp);
+
+    /**
+     * Feeds the price of every tick with a timestamp not older than fromTimestamp, across all instruments
+     */
+    void forEachPrice(long fromTimestamp, DoubleConsumer priceConsumer);
+
+    /**
+     * Feeds the price of every tick of the instrument with a timestamp not older than fromTimestamp
+     */
+    void forEachPrice(String instrument, long fromTimestamp, DoubleConsumer priceConsumer);
+
+    /**
+     * Drops the ticks older than fromTimestamp
+     */
+    default void expire(long fromTimestamp) {
+        expire(fromTimestamp, (instrument, price, timestamp) -> { });
+    }
+
+    /**
+     * Drops the ticks older than fromTimestamp, feeding each dropped tick to the consumer once
+     */
+    void expire(long fromTimestamp, ExpiredTickConsumer expiredTickConsumer);
+
+    /**
+     * @return number of ticks held, including the ones not expired yet
+     */
+    long size();
+
+    void clear();
+
+
+    @FunctionalInterface
+    interface ExpiredTickConsumer {
+
+        void accept(String instrument, double price, long timestamp);
+    }
+}
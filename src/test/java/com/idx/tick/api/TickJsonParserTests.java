@@ -0,0 +1,117 @@
+package com.idx.tick.api;
+
+import com.idx.tick.exception.TickPayloadTooLargeException;
+import com.idx.tick.model.TickBatch;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class TickJsonParserTests {
+
+    private final TickJsonParser tickJsonParser = new TickJsonParser();
+
+
+    @Test
+    public void test_ParseTick() throws IOException {
+        TickBatch tickBatch = tickJsonParser.parseTick(body("{\"instrument\": \"IBM.N\", \"price\": 143.82, \"timestamp\": 1478192204000}"));
+
+        assertThat(tickBatch.size()).isEqualTo(1);
+        assertThat(tickBatch.getInstrument(0)).isEqualTo("IBM.N");
+        assertThat(tickBatch.getPrice(0)).isEqualTo(143.82);
+        assertThat(tickBatch.getTimestamp(0)).isEqualTo(1478192204000L);
+    }
+
+
+    @Test
+    public void test_ParseTick_IgnoresUnknownFieldsAndFieldOrder() throws IOException {
+        TickBatch tickBatch = tickJsonParser.parseTick(body(
+                "{\"timestamp\":5,\"venue\":{\"name\":\"N\",\"ids\":[1,2.5e3,true,null]},\"price\":-1.5E2,\"instrument\":\"A\\u0042C\"}"));
+
+        assertThat(tickBatch.getInstrument(0)).isEqualTo("ABC");
+        assertThat(tickBatch.getPrice(0)).isEqualTo(-150.0);
+        assertThat(tickBatch.getTimestamp(0)).isEqualTo(5L);
+    }
+
+
+    @Test
+    public void test_ParseTick_MatchesJdkDoubleParsing() throws IOException {
+        String[] prices = {"0", "-0.0", "120.63636363636364", "0.1", "123456789012345678901", "1e-30", "9007199254740993", "415.00"};
+        for (String price : prices) {
+            TickBatch tickBatch = tickJsonParser.parseTick(body("{\"instrument\":\"ABC\",\"price\":" + price + ",\"timestamp\":1}"));
+            assertThat(tickBatch.getPrice(0)).isEqualTo(Double.parseDouble(price));
+        }
+    }
+
+
+    @Test
+    public void test_ParseTick_AcceptsQuotedNumbersAndFractionalTimestamps() throws IOException {
+        TickBatch tickBatch = tickJsonParser.parseTick(body("{\"instrument\":\"ABC\",\"price\":\"143.82\",\"timestamp\":\"1478192204000\"}"));
+        assertThat(tickBatch.getPrice(0)).isEqualTo(143.82);
+        assertThat(tickBatch.getTimestamp(0)).isEqualTo(1478192204000L);
+
+        tickBatch = tickJsonParser.parseTick(body("{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":1478192204000.9}"));
+        assertThat(tickBatch.getTimestamp(0)).isEqualTo(1478192204000L);
+        tickBatch = tickJsonParser.parseTick(body("{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":1.5e3}"));
+        assertThat(tickBatch.getTimestamp(0)).isEqualTo(1500L);
+    }
+
+
+    @Test
+    public void test_ParseTicks_ForBodyLargerThanLimit() throws IOException {
+        ReflectionTestUtils.setField(tickJsonParser, "maxBodyBytes", 64);
+        String tick = "{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":1}";
+
+        assertThat(tickJsonParser.parseTicks(body("[" + tick + "]")).size()).isEqualTo(1);
+        Throwable thrown = catchThrowable(() -> tickJsonParser.parseTicks(body("[" + tick + "," + tick + "]")));
+        assertThat(thrown).isInstanceOf(TickPayloadTooLargeException.class).hasMessage("Request body exceeds the limit of 64 bytes");
+    }
+
+
+    @Test
+    public void test_ParseTicks() throws IOException {
+        TickBatch tickBatch = tickJsonParser.parseTicks(body(
+                "[{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":1}, {\"instrument\":\"IBM\",\"price\":2.5,\"timestamp\":2}]"));
+
+        assertThat(tickBatch.size()).isEqualTo(2);
+        assertThat(tickBatch.getInstrument(1)).isEqualTo("IBM");
+        assertThat(tickBatch.getPrice(1)).isEqualTo(2.5);
+        assertThat(tickBatch.getTimestamp(1)).isEqualTo(2L);
+
+        assertThat(tickJsonParser.parseTicks(body(" [ ] ")).size()).isEqualTo(0);
+    }
+
+
+    @Test
+    public void test_ParseTick_ForMalformedInput() {
+        String[] bodies = {
+                "",
+                "{",
+                "[]",
+                "{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":1",
+                "{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":1} {}",
+                "{\"instrument\":\"ABC\",\"price\":\"one\",\"timestamp\":1}",
+                "{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":\"1.5\"}",
+                "{\"instrument\":\"ABC\",\"price\":1,\"timestamp\":99999999999999999999}",
+                "{\"instrument\":\"ABC\",\"price\":1}",
+                "{\"instrument\":\"ABC\",\"price\":null,\"timestamp\":1}",
+                "{\"instrument\":\" \",\"price\":1,\"timestamp\":1}",
+                "{\"price\":1,\"timestamp\":1}"
+        };
+        for (String body : bodies) {
+            Throwable thrown = catchThrowable(() -> tickJsonParser.parseTick(body(body)));
+            assertThat(thrown).as(body).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
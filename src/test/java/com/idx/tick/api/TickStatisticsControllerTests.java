@@ -3,6 +3,8 @@ package com.idx.tick.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.idx.tick.config.CommonBeanConfiguration;
 import com.idx.tick.model.Tick;
+import com.idx.tick.service.InstrumentGroupService;
+import com.idx.tick.service.InstrumentRankingService;
 import com.idx.tick.service.PriceAggregationService;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
@@ -11,6 +13,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
@@ -32,7 +35,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(TickStatisticsController.class)
-@ContextConfiguration(classes = {TickStatisticsController.class, CommonBeanConfiguration.class, PriceAggregationService.class})
+@ContextConfiguration(classes = {TickStatisticsController.class, TickJsonParser.class, StatResponseCache.class, CommonBeanConfiguration.class,
+        PriceAggregationService.class, InstrumentRankingService.class, InstrumentGroupService.class})
 @TestPropertySource("classpath:application-test.properties")
 public class TickStatisticsControllerTests {
 
@@ -47,7 +51,7 @@ public class TickStatisticsControllerTests {
 
     @Before
     public void setUp() throws IOException {
-        priceAggregationService.getTicks().clear();
+        priceAggregationService.clearTicks();
 
         File file = ResourceUtils.getFile("classpath:ticks.csv");
         // We use apache.commons-csv to parse the CSV easily
@@ -59,7 +63,8 @@ public class TickStatisticsControllerTests {
 
 
     @Test
-    public void test_PublishTick_WhenServiceThrows_TickOlderThanAllowedDurationException() throws Exception {
+    public void test_PublishTick_ForTicksOlderThanAllowedDuration() throws Exception {
+        long staleTickCount = priceAggregationService.getStaleTickCount();
         MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
             .post("/ticks")
                 .content(asJsonString(new Tick("ABC", 120.0, System.currentTimeMillis()-1001)))
@@ -67,10 +72,93 @@ public class TickStatisticsControllerTests {
                 .andExpect(status().isNoContent())
                 .andReturn();
 
+        // Rejected without any exception, only counted
+        assertThat(mvcResult.getResolvedException()).isNull();
+        assertThat(priceAggregationService.getStaleTickCount()).isEqualTo(staleTickCount + 1);
+    }
+
+
+    @Test
+    public void test_PublishTick_ForMalformedBody() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks")
+                .content("{\"instrument\": \"ABC\", \"price\": 120.0,")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Malformed tick JSON");
+    }
+
+
+    @Test
+    public void test_PublishTick_ForMissingInstrument() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks")
+                .content(asJsonString(new Tick(null, 120.0, System.currentTimeMillis())))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        assertThat(mvcResult.getResolvedException())
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Instrument passed is either null or empty");
+    }
+
+
+    @Test
+    public void test_PublishTicksInBatch_AndCheckStats() throws Exception {
+        long now = System.currentTimeMillis();
+        List<Tick> batch = List.of(new Tick("ABC", 120.0, now), new Tick("ABC", 130.0, now), new Tick("ABC", 140.0, now - 1001));
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks/batch")
+                .content(asJsonString(batch))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        MvcResult mvcResult = mockMvc.perform(get("/statistics/ABC"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("{\"avg\":125.0,\"max\":130.0,\"min\":120.0,\"count\":2}");
+    }
+
+
+    @Test
+    public void test_PublishTicksInBatch_ForMalformedBody() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks/batch")
+                .content("[{\"instrument\": \"XYZ\", \"price\": 120.0, \"timestamp\": " + System.currentTimeMillis() + "}, {\"price\": 1}]")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        MvcResult mvcResult = mockMvc.perform(get("/statistics/XYZ"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("{\"avg\":0.0,\"max\":0.0,\"min\":0.0,\"count\":0}");
+    }
+
+
+    @Test
+    public void test_PublishTicksInBatch_ForBodyLargerThanLimit() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"instrument\": \"BIG\", \"price\": 120.0, \"timestamp\": ").append(System.currentTimeMillis()).append("}");
+        }
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks/batch")
+                .content(body.append("]").toString())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPayloadTooLarge())
+                .andReturn();
+
         assertThat(mvcResult.getResolvedException())
                 .isInstanceOf(ResponseStatusException.class)
-                .hasMessageContaining("Tick(instrument=ABC, price=120.0, timestamp=")
-                .hasMessageContaining(") is older than allowed duration of 1000 milliseconds");
+                .hasMessageContaining("Request body exceeds the limit of 65536 bytes");
+        assertThat(priceAggregationService.getStatForInstrument("BIG")).isEmpty();
     }
 
 
@@ -103,6 +191,107 @@ public class TickStatisticsControllerTests {
     }
 
 
+    @Test
+    public void test_GetStatisticsForInstrument_WithETag() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks")
+                .content(asJsonString(new Tick("ETG", 120.0, System.currentTimeMillis())))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        MvcResult mvcResult = mockMvc.perform(get("/statistics/ETG"))
+                .andExpect(status().isFound())
+                .andReturn();
+        String etag = mvcResult.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("{\"avg\":120.0,\"max\":120.0,\"min\":120.0,\"count\":1}");
+
+        mvcResult = mockMvc.perform(get("/statistics/ETG").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEmpty();
+
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks")
+                .content(asJsonString(new Tick("ETG", 130.0, System.currentTimeMillis())))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        mvcResult = mockMvc.perform(get("/statistics/ETG").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("{\"avg\":125.0,\"max\":130.0,\"min\":120.0,\"count\":2}");
+    }
+
+
+    @Test
+    public void test_GetCandlesForInstrument() throws Exception {
+        long timestamp = System.currentTimeMillis();
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks/batch")
+                .content(asJsonString(List.of(new Tick("CDL", 120.0, timestamp), new Tick("CDL", 110.0, timestamp))))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        MvcResult mvcResult = mockMvc.perform(get("/candles/CDL").param("resolution", "1000"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("[{\"timestamp\":" + (timestamp / 1000) * 1000
+                + ",\"resolution\":1000,\"open\":120.0,\"high\":120.0,\"low\":110.0,\"close\":110.0,\"count\":2}]");
+
+        mockMvc.perform(get("/candles/CDL").param("resolution", "1234"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    @Test
+    public void test_GetStatisticsForGroup() throws Exception {
+        long timestamp = System.currentTimeMillis();
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks/batch")
+                .content(asJsonString(List.of(new Tick("GR1.X", 10.0, timestamp), new Tick("GR2.X", 30.0, timestamp))))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        MvcResult mvcResult = mockMvc.perform(get("/statistics/group/X"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("{\"avg\":20.0,\"max\":30.0,\"min\":10.0,\"count\":2}");
+
+        mvcResult = mockMvc.perform(get("/statistics/group/UNKNOWN"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("{\"avg\":0.0,\"max\":0.0,\"min\":0.0,\"count\":0}");
+    }
+
+
+    @Test
+    public void test_GetTopInstruments() throws Exception {
+        // Drop instruments of previous tests from the rankings
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        long timestamp = System.currentTimeMillis();
+        mockMvc.perform(MockMvcRequestBuilders
+                .post("/ticks/batch")
+                .content(asJsonString(List.of(new Tick("TP1", 10.0, timestamp), new Tick("TP2", 10.0, timestamp), new Tick("TP2", 30.0, timestamp))))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        MvcResult mvcResult = mockMvc.perform(get("/statistics/top/most-active").param("limit", "1"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("[{\"instrument\":\"TP2\",\"avg\":20.0,\"max\":30.0,\"min\":10.0,\"count\":2}]");
+
+        mvcResult = mockMvc.perform(get("/statistics/top/largest-range").param("limit", "1"))
+                .andExpect(status().isFound())
+                .andReturn();
+        assertThat(mvcResult.getResponse().getContentAsString()).isEqualTo("[{\"instrument\":\"TP2\",\"avg\":20.0,\"max\":30.0,\"min\":10.0,\"count\":2}]");
+
+        mockMvc.perform(get("/statistics/top/most-active").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+
     @Test
     public void test_PublishTickContinually_AndCheckStats() throws Exception {
         for (CSVRecord r : records) {
@@ -0,0 +1,22 @@
+package com.idx.tick.service;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachedTickClockTests {
+
+    @Test
+    public void test_CurrentTimeMillis_FollowsSystemClockWithinResolution() throws InterruptedException {
+        try (CachedTickClock clock = new CachedTickClock(5)) {
+            long before = System.currentTimeMillis();
+            Thread.sleep(50);
+            long cached = clock.currentTimeMillis();
+            long after = System.currentTimeMillis();
+
+            assertThat(cached).isGreaterThanOrEqualTo(before).isLessThanOrEqualTo(after);
+            // Lags the system clock by the resolution, plus scheduling delays of the ticker thread
+            assertThat(after - cached).isLessThan(40L);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.idx.tick.service;
+
+import com.idx.tick.model.Candle;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CandleSeriesTests {
+
+    private static final long NOW = 13_500;
+
+    @Test
+    public void test_Update_WithOutOfOrderTicks() {
+        CandleSeries candleSeries = new CandleSeries(1000, 3);
+        candleSeries.update(120.0, 10_500, NOW);
+        candleSeries.update(125.0, 10_700, NOW);
+        candleSeries.update(110.0, 10_100, NOW);
+        candleSeries.update(130.0, 11_200, NOW);
+
+        List<Candle> candles = candleSeries.getCandles();
+        assertThat(candles).hasSize(2);
+        Candle candle = candles.get(0);
+        assertThat(candle.getTimestamp()).isEqualTo(10_000);
+        assertThat(candle.getOpen()).isEqualTo(110.0);
+        assertThat(candle.getHigh()).isEqualTo(125.0);
+        assertThat(candle.getLow()).isEqualTo(110.0);
+        assertThat(candle.getClose()).isEqualTo(125.0);
+        assertThat(candle.getCount()).isEqualTo(3);
+        candle = candles.get(1);
+        assertThat(candle.getTimestamp()).isEqualTo(11_000);
+        assertThat(candle.getClose()).isEqualTo(130.0);
+        assertThat(candle.getCount()).isEqualTo(1);
+    }
+
+
+    @Test
+    public void test_Update_RecyclesOldestBucket() {
+        CandleSeries candleSeries = new CandleSeries(1000, 3);
+        candleSeries.update(1.0, 10_000, NOW);
+        candleSeries.update(2.0, 11_000, NOW);
+        candleSeries.update(3.0, 12_000, NOW);
+        candleSeries.update(4.0, 13_000, NOW);
+        // Bucket 10_000 already left the ring
+        candleSeries.update(5.0, 10_500, NOW);
+
+        List<Candle> candles = candleSeries.getCandles();
+        assertThat(candles).extracting(Candle::getTimestamp).containsExactly(11_000L, 12_000L, 13_000L);
+        assertThat(candles).extracting(Candle::getCount).containsExactly(1L, 1L, 1L);
+    }
+
+
+    @Test
+    public void test_Update_IgnoresTicksBeyondTheNextBucket() {
+        CandleSeries candleSeries = new CandleSeries(1000, 3);
+        candleSeries.update(1.0, 13_000, NOW);
+        candleSeries.update(2.0, 1_000_000, NOW);
+        // A far future tick did not move the ring ahead of the current time
+        candleSeries.update(3.0, 13_200, NOW);
+        candleSeries.update(4.0, 14_100, NOW);
+
+        List<Candle> candles = candleSeries.getCandles();
+        assertThat(candles).extracting(Candle::getTimestamp).containsExactly(13_000L, 14_000L);
+        assertThat(candles).extracting(Candle::getCount).containsExactly(2L, 1L);
+    }
+
+
+    @Test
+    public void test_Update_GrowsTheRingUpToItsCapacity() {
+        CandleSeries candleSeries = new CandleSeries(1000, 6);
+        for (int i = 0; i < 6; i++) {
+            candleSeries.update(i, 8_000 + i * 1000, NOW);
+        }
+        // An older bucket still within the capacity lands on its own slot
+        candleSeries.update(10.0, 8_400, NOW);
+
+        List<Candle> candles = candleSeries.getCandles();
+        assertThat(candles).extracting(Candle::getTimestamp).containsExactly(8_000L, 9_000L, 10_000L, 11_000L, 12_000L, 13_000L);
+        assertThat(candles.get(0).getCount()).isEqualTo(2);
+        assertThat(candles.get(0).getOpen()).isEqualTo(0.0);
+        assertThat(candles.get(0).getClose()).isEqualTo(10.0);
+
+        candleSeries.update(6.0, 14_000, NOW);
+        assertThat(candleSeries.getCandles()).extracting(Candle::getTimestamp)
+                .containsExactly(9_000L, 10_000L, 11_000L, 12_000L, 13_000L, 14_000L);
+    }
+}
@@ -0,0 +1,105 @@
+package com.idx.tick.service;
+
+import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Stat;
+import com.idx.tick.model.Tick;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {PriceAggregationService.class, InstrumentGroupService.class})
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "instrument.group.suffix.separator=.",
+        "instrument.group.prefixes=OPTIONS:OPT_,DERIVATIVES:OPT_",
+        "instrument.group.mapping.file=classpath:instrument-groups.properties"})
+public class InstrumentGroupServiceTests {
+
+    @Autowired
+    private PriceAggregationService priceAggregationService;
+
+    @Autowired
+    private InstrumentGroupService instrumentGroupService;
+
+
+    @Before
+    public void clearData(){
+        priceAggregationService.clearTicks();
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+    }
+
+
+    @Test
+    public void test_GroupsOfInstrument() {
+        assertThat(instrumentGroupService.getGroupsOf("IBM.N")).containsExactly("N", "TECH");
+        assertThat(instrumentGroupService.getGroupsOf("MSFT.O")).containsExactly("O", "TECH", "US");
+        assertThat(instrumentGroupService.getGroupsOf("OPT_IBM.N")).containsExactly("N", "OPTIONS", "DERIVATIVES");
+        assertThat(instrumentGroupService.getGroupsOf("ORCL.N")).containsExactly("N", "TECH", "US");
+        assertThat(instrumentGroupService.getGroupsOf("ABC")).isEmpty();
+    }
+
+    @Test
+    public void test_MappingFile_IsReadFromAPlainFileSystemPath() throws IOException {
+        Path mappingFile = Files.createTempFile("instrument-groups", ".properties");
+        Files.writeString(mappingFile, "IBM.N=TECH\n");
+        InstrumentGroupService fileGroupService = new InstrumentGroupService();
+        ReflectionTestUtils.setField(fileGroupService, "suffixSeparator", "");
+        ReflectionTestUtils.setField(fileGroupService, "prefixGroupDefinitions", new String[0]);
+        ReflectionTestUtils.setField(fileGroupService, "mappingFile", mappingFile.toAbsolutePath().toString());
+        try {
+            fileGroupService.loadGroupDefinitions();
+            assertThat(fileGroupService.getGroupsOf("IBM.N")).containsExactly("TECH");
+        } finally {
+            Files.delete(mappingFile);
+        }
+    }
+
+
+    @Test
+    public void test_GroupStats_AreMaintainedFromMemberStats() throws TickOlderThanAllowedDurationException {
+        long timestamp = System.currentTimeMillis();
+        priceAggregationService.processTick(new Tick("IBM.N", 100.0, timestamp));
+        priceAggregationService.processTick(new Tick("IBM.N", 120.0, timestamp));
+        priceAggregationService.processTick(new Tick("MSFT.O", 300.0, timestamp));
+        priceAggregationService.processTick(new Tick("OPT_IBM.N", 5.0, timestamp));
+
+        Stat techStat = instrumentGroupService.getStatForGroup("TECH").get();
+        assertThat(techStat.getCount()).isEqualTo(3L);
+        assertThat(techStat.getAvg()).isEqualTo(520.0 / 3);
+        assertThat(techStat.getMax()).isEqualTo(300.0);
+        assertThat(techStat.getMin()).isEqualTo(100.0);
+
+        Stat nStat = instrumentGroupService.getStatForGroup("N").get();
+        assertThat(nStat.getCount()).isEqualTo(3L);
+        assertThat(nStat.getMin()).isEqualTo(5.0);
+        assertThat(instrumentGroupService.getStatForGroup("UNKNOWN")).isEmpty();
+
+        sleepFor(1100);
+        priceAggregationService.processTick(new Tick("MSFT.O", 310.0, System.currentTimeMillis()));
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+
+        techStat = instrumentGroupService.getStatForGroup("TECH").get();
+        assertThat(techStat.getCount()).isEqualTo(1L);
+        assertThat(techStat.getAvg()).isEqualTo(310.0);
+        assertThat(techStat.getMax()).isEqualTo(310.0);
+        assertThat(techStat.getMin()).isEqualTo(310.0);
+        assertThat(instrumentGroupService.getStatForGroup("N").get().getCount()).isEqualTo(0L);
+    }
+
+
+    private void sleepFor(long ms){
+        try { Thread.sleep(ms);   } catch (InterruptedException e) {   e.printStackTrace(); }
+    }
+}
@@ -0,0 +1,77 @@
+package com.idx.tick.service;
+
+import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Stat;
+import com.idx.tick.model.Tick;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {PriceAggregationService.class, InstrumentRankingService.class})
+@TestPropertySource("classpath:application-test.properties")
+public class InstrumentRankingServiceTests {
+
+    @Autowired
+    private PriceAggregationService priceAggregationService;
+
+    @Autowired
+    private InstrumentRankingService instrumentRankingService;
+
+
+    @Before
+    public void clearData(){
+        priceAggregationService.clearTicks();
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+    }
+
+
+    @Test
+    public void test_Rankings_AreUpdatedOnIngestAndOnWindowExpiry() throws TickOlderThanAllowedDurationException {
+        long timestamp = System.currentTimeMillis();
+        priceAggregationService.processTick(new Tick("RK1", 100.0, timestamp));
+        priceAggregationService.processTick(new Tick("RK2", 100.0, timestamp));
+        priceAggregationService.processTick(new Tick("RK2", 150.0, timestamp));
+        priceAggregationService.processTick(new Tick("RK3", 100.0, timestamp));
+        priceAggregationService.processTick(new Tick("RK3", 110.0, timestamp));
+        priceAggregationService.processTick(new Tick("RK3", 120.0, timestamp));
+
+        Map<String, Stat> mostActive = instrumentRankingService.getMostActiveInstruments(2);
+        assertThat(mostActive.keySet()).containsExactly("RK3", "RK2");
+        assertThat(mostActive.get("RK3").getCount()).isEqualTo(3L);
+
+        Map<String, Stat> largestRange = instrumentRankingService.getLargestRangeInstruments(20);
+        assertThat(largestRange.keySet()).containsExactly("RK2", "RK3", "RK1");
+
+        sleepFor(1100);
+        priceAggregationService.processTick(new Tick("RK1", 100.0, System.currentTimeMillis()));
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+
+        assertThat(instrumentRankingService.getMostActiveInstruments(20).keySet()).containsExactly("RK1");
+        assertThat(instrumentRankingService.getLargestRangeInstruments(20).keySet()).containsExactly("RK1");
+    }
+
+
+    @Test
+    public void test_Rankings_ForIllegalArguments() {
+        Throwable thrown = catchThrowable(() -> instrumentRankingService.getMostActiveInstruments(0));
+        assertThat(thrown)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Limit passed must be greater than 0");
+    }
+
+
+    private void sleepFor(long ms){
+        try { Thread.sleep(ms);   } catch (InterruptedException e) {   e.printStackTrace(); }
+    }
+}
@@ -0,0 +1,95 @@
+package com.idx.tick.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapTickWindowStoreTests {
+
+    private final OffHeapTickWindowStore offHeapStore = new OffHeapTickWindowStore(4, 2);
+
+
+    @Test
+    public void test_ForEachPrice_MatchesHeapStore() {
+        HeapTickWindowStore heapStore = new HeapTickWindowStore();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 1000; i++) {
+            String instrument = "I" + random.nextInt(5);
+            double price = random.nextInt(100000) / 100.0;
+            long timestamp = 1000 + random.nextInt(1000);
+            offHeapStore.add(instrument, price, timestamp);
+            heapStore.add(instrument, price, timestamp);
+        }
+
+        for (String instrument : new String[] {"I0", "I3", "NONE"}) {
+            DoubleSummaryStatistics expected = new DoubleSummaryStatistics();
+            heapStore.forEachPrice(instrument, 1500, expected);
+            DoubleSummaryStatistics actual = new DoubleSummaryStatistics();
+            offHeapStore.forEachPrice(instrument, 1500, actual);
+
+            assertThat(actual.getCount()).isEqualTo(expected.getCount());
+            assertThat(actual.getMin()).isEqualTo(expected.getMin());
+            assertThat(actual.getMax()).isEqualTo(expected.getMax());
+            assertThat(actual.getSum()).isEqualTo(expected.getSum());
+        }
+
+        DoubleSummaryStatistics expected = new DoubleSummaryStatistics();
+        heapStore.forEachPrice(1500, expected);
+        DoubleSummaryStatistics actual = new DoubleSummaryStatistics();
+        offHeapStore.forEachPrice(1500, actual);
+        assertThat(actual.getCount()).isEqualTo(expected.getCount());
+        assertThat(actual.getMax()).isEqualTo(expected.getMax());
+        assertThat(offHeapStore.size()).isEqualTo(1000L);
+    }
+
+
+    @Test
+    public void test_Expire_ReleasesChunksOnlyOnceAllTheirTicksExpired() {
+        for (int i = 0; i < 10; i++) {
+            offHeapStore.add("ABC", i, 1000 + i * 100);
+        }
+        // Chunks of 4 ticks: [1000..1300], [1400..1700], [1800..1900]
+        List<Double> expiredPrices = new ArrayList<>();
+        offHeapStore.expire(1500, (instrument, price, timestamp) -> expiredPrices.add(price));
+        assertThat(offHeapStore.size()).isEqualTo(6L);
+        assertThat(expiredPrices).containsExactly(0.0, 1.0, 2.0, 3.0);
+
+        DoubleSummaryStatistics dss = new DoubleSummaryStatistics();
+        offHeapStore.forEachPrice("ABC", 1500, dss);
+        assertThat(dss.getCount()).isEqualTo(5L);
+        assertThat(dss.getMin()).isEqualTo(5.0);
+
+        offHeapStore.expire(2000);
+        assertThat(offHeapStore.size()).isEqualTo(0L);
+
+        // Released chunks are recycled for new ticks
+        offHeapStore.add("ABC", 42.0, 3000);
+        dss = new DoubleSummaryStatistics();
+        offHeapStore.forEachPrice(0, dss);
+        assertThat(dss.getCount()).isEqualTo(1L);
+        assertThat(dss.getMax()).isEqualTo(42.0);
+    }
+
+
+    @Test
+    public void test_Expire_ReleasesChunksBehindAChunkPinnedByAFutureTick() {
+        offHeapStore.add("ABC", 1.0, 1000);
+        offHeapStore.add("ABC", 2.0, 1_000_000);
+        for (int i = 0; i < 10; i++) {
+            offHeapStore.add("ABC", i, 1100 + i * 100);
+        }
+        // Chunks of 4 ticks: [1000, 1000000, 1100, 1200], [1300..1600], [1700..2000]
+        offHeapStore.expire(2500);
+        assertThat(offHeapStore.size()).isEqualTo(4L);
+
+        DoubleSummaryStatistics dss = new DoubleSummaryStatistics();
+        offHeapStore.forEachPrice("ABC", 2500, dss);
+        assertThat(dss.getCount()).isEqualTo(1L);
+        assertThat(dss.getMax()).isEqualTo(2.0);
+    }
+}
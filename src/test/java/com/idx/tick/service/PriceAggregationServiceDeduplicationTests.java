@@ -0,0 +1,52 @@
+package com.idx.tick.service;
+
+import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Stat;
+import com.idx.tick.model.Tick;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {PriceAggregationService.class})
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "tick.dedup.enabled=true",
+        "tick.dedup.expected.ticks=10000"})
+public class PriceAggregationServiceDeduplicationTests {
+
+    @Autowired
+    private PriceAggregationService priceAggregationService;
+
+
+    @Before
+    public void clearData(){
+        priceAggregationService.clearTicks();
+    }
+
+
+    @Test
+    public void test_ProcessTick_DropsAndCountsDuplicateTicks() throws TickOlderThanAllowedDurationException {
+        assertThat(priceAggregationService.isTickDeduplicationEnabled()).isTrue();
+        long duplicateTickCount = priceAggregationService.getDuplicateTickCount();
+        long timestamp = System.currentTimeMillis();
+
+        priceAggregationService.processTick(new Tick("ABC", 120.0, timestamp));
+        priceAggregationService.processTick(new Tick("ABC", 120.0, timestamp));
+        priceAggregationService.processTick(new Tick("ABC", 130.0, timestamp));
+
+        Optional<Stat> stat = priceAggregationService.getStatForInstrument("ABC");
+        assertThat(stat).isPresent();
+        assertThat(stat.get().getCount()).isEqualTo(2L);
+        assertThat(stat.get().getAvg()).isEqualTo(125.0);
+        assertThat(priceAggregationService.getDuplicateTickCount()).isEqualTo(duplicateTickCount + 1);
+    }
+}
@@ -0,0 +1,230 @@
+package com.idx.tick.service;
+
+import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Stat;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Soak test running concurrent writers and readers over randomized instrument streams.
+ * Every stat observed by a reader is checked against a reference model of the published ticks: it must only hold
+ * ticks of the sliding interval it was aggregated for. The run fails if the ingest throughput drops below the configured floor.
+ *
+ * Tunable with system properties, e.g. mvn test -Dtest=PriceAggregationServiceSoakTests -Dsoak.duration.ms=600000
+ *  soak.duration.ms       how long writers and readers run (default 3000)
+ *  soak.writers           number of writer threads (default 4)
+ *  soak.readers           number of reader threads (default 4)
+ *  soak.instruments       number of distinct instruments (default 50)
+ *  soak.min.throughput    minimum accepted ticks per second (default 200)
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {PriceAggregationService.class, InstrumentRankingService.class})
+@TestPropertySource("classpath:application-test.properties")
+public class PriceAggregationServiceSoakTests {
+
+    private static final long DURATION_MS = Long.getLong("soak.duration.ms", 3000);
+    private static final int WRITERS = Integer.getInteger("soak.writers", 4);
+    private static final int READERS = Integer.getInteger("soak.readers", 4);
+    private static final int INSTRUMENTS = Integer.getInteger("soak.instruments", 50);
+    private static final long MIN_THROUGHPUT = Long.getLong("soak.min.throughput", 200);
+
+    // Prices of instrument i are drawn from [i * PRICE_BAND + 1, (i + 1) * PRICE_BAND - 1]
+    private static final double PRICE_BAND = 1000.0;
+    private static final double TOLERANCE = 1e-9;
+
+    @Autowired
+    private PriceAggregationService priceAggregationService;
+
+    @Value("#{T(java.lang.Long).valueOf('${sliding.interval}')}")
+    private long slidingIntervalInMs;
+
+    private final AtomicLongArray publishedCounts = new AtomicLongArray(INSTRUMENTS);
+    // Recorded before being processed, so that a reader sees every tick a stat may hold
+    private final List<Deque<long[]>> publishedTicks = new ArrayList<>();
+    private final List<Queue<long[]>> acceptedTicks = new ArrayList<>();
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+
+    @Before
+    public void clearData() {
+        priceAggregationService.clearTicks();
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        for (int i = 0; i < INSTRUMENTS; i++) {
+            publishedTicks.add(new ConcurrentLinkedDeque<>());
+            acceptedTicks.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+
+    @Test
+    public void test_ConcurrentWritersAndReaders_StayConsistentWithReferenceModel() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) threads.add(new Thread(() -> write(deadline), "soak-writer-" + i));
+        for (int i = 0; i < READERS; i++) threads.add(new Thread(() -> read(deadline), "soak-reader-" + i));
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        long accepted = acceptedTicks.stream().mapToLong(Queue::size).sum();
+        double throughput = accepted / elapsedSeconds;
+        assertThat(violations).isEmpty();
+        assertThat(throughput).as("ticks per second").isGreaterThanOrEqualTo((double) MIN_THROUGHPUT);
+        verifyFinalStats();
+    }
+
+
+    private void write(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < deadline) {
+            int instrument = random.nextInt(INSTRUMENTS);
+            double price = instrument * PRICE_BAND + 1 + random.nextInt((int) PRICE_BAND - 1);
+            long timestamp = System.currentTimeMillis();
+
+            publishedCounts.incrementAndGet(instrument);
+            publishedTicks.get(instrument).add(new long[] {timestamp, Double.doubleToLongBits(price)});
+            try {
+                priceAggregationService.processTick(instrumentName(instrument), price, timestamp);
+                acceptedTicks.get(instrument).add(new long[] {timestamp, Double.doubleToLongBits(price)});
+            } catch (TickOlderThanAllowedDurationException totade) {
+                violations.add("Fresh tick rejected: " + totade.getMessage());
+            }
+        }
+    }
+
+
+    private void read(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.currentTimeMillis() < deadline) {
+            int instrument = random.nextInt(INSTRUMENTS);
+
+            Optional<Stat> instrumentStat = priceAggregationService.getStatForInstrument(instrumentName(instrument));
+            instrumentStat.ifPresent(stat -> {
+                checkStat(instrumentName(instrument), stat, instrument * PRICE_BAND, (instrument + 1) * PRICE_BAND);
+                checkStatHoldsOnlyTicksOfItsInterval(instrument, stat);
+                if (stat.getCount() > publishedCounts.get(instrument)) {
+                    violations.add(instrumentName(instrument) + " counts more ticks than were published: " + stat);
+                }
+            });
+
+            priceAggregationService.getOverallStat()
+                    .ifPresent(stat -> checkStat("overall", stat, 0, INSTRUMENTS * PRICE_BAND));
+        }
+    }
+
+
+    private void checkStat(String name, Stat stat, double lowestPrice, double highestPrice) {
+        if (stat.getCount() < 0) {
+            violations.add(name + " stat has a negative count: " + stat);
+
+        } else if (stat.getCount() == 0) {
+            if (stat.getMin() != 0.0 || stat.getMax() != 0.0) violations.add(name + " stat without ticks has a min or max: " + stat);
+
+        } else {
+            if (stat.getMin() < lowestPrice || stat.getMax() > highestPrice) {
+                violations.add(name + " stat holds prices of another instrument: " + stat);
+            }
+            if (stat.getMin() > stat.getMax()
+                    || stat.getAvg() < stat.getMin() - TOLERANCE * stat.getMax()
+                    || stat.getAvg() > stat.getMax() + TOLERANCE * stat.getMax()) {
+                violations.add(name + " stat is inconsistent: " + stat);
+            }
+        }
+    }
+
+
+    /**
+     * A stat may only hold ticks published within the sliding interval ending at its update timestamp.
+     * Counting or pricing a tick from before that interval, i.e. a value which already slid out of the window,
+     * makes the stat exceed the count or the price range of the eligible published ticks.
+     */
+    private void checkStatHoldsOnlyTicksOfItsInterval(int instrument, Stat stat) {
+        if (stat.getCount() == 0) return;
+        long windowStart = stat.getLastUpdatedTs() - slidingIntervalInMs;
+        long eligibleCount = 0;
+        double eligibleMin = Double.MAX_VALUE;
+        double eligibleMax = -Double.MAX_VALUE;
+        Iterator<long[]> newestFirst = publishedTicks.get(instrument).descendingIterator();
+        while (newestFirst.hasNext()) {
+            long[] tick = newestFirst.next();
+            // Writers record ticks slightly out of order, so the scan goes on one more interval back
+            if (tick[0] < windowStart - slidingIntervalInMs) break;
+            if (tick[0] < windowStart) continue;
+            double price = Double.longBitsToDouble(tick[1]);
+            eligibleCount++;
+            eligibleMin = Math.min(eligibleMin, price);
+            eligibleMax = Math.max(eligibleMax, price);
+        }
+        if (stat.getCount() > eligibleCount || stat.getMin() < eligibleMin || stat.getMax() > eligibleMax) {
+            violations.add(instrumentName(instrument) + " stat holds ticks from before its sliding interval: " + stat
+                    + ", " + eligibleCount + " ticks published in the interval within [" + eligibleMin + ", " + eligibleMax + "]");
+        }
+    }
+
+
+    /**
+     * Once writers are done, the last stat published for an instrument must hold exactly the accepted ticks
+     * which were in the sliding interval when that stat was aggregated.
+     */
+    private void verifyFinalStats() {
+        long now = System.currentTimeMillis();
+        for (int instrument = 0; instrument < INSTRUMENTS; instrument++) {
+            Optional<Stat> optionalStat = priceAggregationService.getStatForInstrument(instrumentName(instrument));
+            long lastAccepted = acceptedTicks.get(instrument).stream().mapToLong(tick -> tick[0]).max().orElse(Long.MIN_VALUE);
+            if (!optionalStat.isPresent()) {
+                assertThat(lastAccepted).as(instrumentName(instrument) + " has no stat but recent ticks")
+                        .isLessThan(now - slidingIntervalInMs);
+                continue;
+            }
+
+            Stat stat = optionalStat.get();
+            long windowStart = stat.getLastUpdatedTs() - slidingIntervalInMs;
+            double[] prices = acceptedTicks.get(instrument).stream()
+                    .filter(tick -> tick[0] >= windowStart)
+                    .mapToDouble(tick -> Double.longBitsToDouble(tick[1]))
+                    .toArray();
+
+            assertThat(stat.getCount()).as(instrumentName(instrument) + " count").isEqualTo(prices.length);
+            if (prices.length > 0) {
+                double sum = 0;
+                double min = Double.MAX_VALUE;
+                double max = -Double.MAX_VALUE;
+                for (double price : prices) {
+                    sum += price;
+                    min = Math.min(min, price);
+                    max = Math.max(max, price);
+                }
+                assertThat(stat.getMin()).as(instrumentName(instrument) + " min").isEqualTo(min);
+                assertThat(stat.getMax()).as(instrumentName(instrument) + " max").isEqualTo(max);
+                assertThat(Math.abs(stat.getAvg() - sum / prices.length)).as(instrumentName(instrument) + " avg")
+                        .isLessThanOrEqualTo(TOLERANCE * max);
+            }
+        }
+    }
+
+
+    private static String instrumentName(int instrument) {
+        return "SOAK" + instrument;
+    }
+}
@@ -1,6 +1,7 @@
 package com.idx.tick.service;
 
 import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Candle;
 import com.idx.tick.model.Stat;
 import com.idx.tick.model.Tick;
 import org.apache.commons.csv.CSVFormat;
@@ -35,7 +36,7 @@ public class PriceAggregationServiceTests {
 
     @Before
     public void clearData(){
-        priceAggregationService.getTicks().clear();
+        priceAggregationService.clearTicks();
     }
 
 
@@ -61,6 +62,84 @@ public class PriceAggregationServiceTests {
     }
 
 
+    @Test
+    public void test_OfferTick_CountsTicksOlderThanAllowedDurationWithoutThrowing() {
+        long staleTickCount = priceAggregationService.getStaleTickCount();
+        assertThat(priceAggregationService.offerTick("OFR", 120.0, System.currentTimeMillis() - 1001)).isFalse();
+        assertThat(priceAggregationService.offerTick("OFR", 120.0, System.currentTimeMillis() - 2000)).isFalse();
+        assertThat(priceAggregationService.getStaleTickCount()).isEqualTo(staleTickCount + 2);
+        assertThat(priceAggregationService.getStatForInstrument("OFR")).isEmpty();
+
+        assertThat(priceAggregationService.offerTick("OFR", 120.0, System.currentTimeMillis())).isTrue();
+        assertThat(priceAggregationService.getStatForInstrument("OFR").get().getCount()).isEqualTo(1L);
+        assertThat(priceAggregationService.getStaleTickCount()).isEqualTo(staleTickCount + 2);
+    }
+
+
+    @Test
+    public void test_StatVersion_ChangesOnlyWithStatValues() throws TickOlderThanAllowedDurationException {
+        priceAggregationService.processTick(new Tick("VER", 120.0, System.currentTimeMillis()));
+        long version = priceAggregationService.getStatForInstrument("VER").get().getVersion();
+
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        assertThat(priceAggregationService.getStatForInstrument("VER").get().getVersion()).isEqualTo(version);
+
+        priceAggregationService.processTick(new Tick("VER", 121.0, System.currentTimeMillis()));
+        assertThat(priceAggregationService.getStatForInstrument("VER").get().getVersion()).isGreaterThan(version);
+    }
+
+
+    @Test
+    public void test_Candles_AreUpdatedIncrementally() throws TickOlderThanAllowedDurationException {
+        long timestamp = System.currentTimeMillis();
+        priceAggregationService.processTick(new Tick("CDL", 120.0, timestamp));
+        priceAggregationService.processTick(new Tick("CDL", 125.0, timestamp));
+        priceAggregationService.processTick(new Tick("CDL", 110.0, timestamp));
+
+        List<Candle> candles = priceAggregationService.getCandlesForInstrument("CDL", 60000);
+        assertThat(candles).hasSize(1);
+        Candle candle = candles.get(0);
+        assertThat(candle.getTimestamp()).isEqualTo((timestamp / 60000) * 60000);
+        assertThat(candle.getOpen()).isEqualTo(120.0);
+        assertThat(candle.getHigh()).isEqualTo(125.0);
+        assertThat(candle.getLow()).isEqualTo(110.0);
+        assertThat(candle.getClose()).isEqualTo(110.0);
+        assertThat(candle.getCount()).isEqualTo(3);
+
+        assertThat(priceAggregationService.getCandlesForInstrument("NONE", 1000)).isEmpty();
+
+        Throwable thrown = catchThrowable(() -> priceAggregationService.getCandlesForInstrument("CDL", 1234));
+        assertThat(thrown)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Candle resolution of 1234 milliseconds is not configured");
+    }
+
+
+    @Test
+    public void test_IdleInstruments_AreEvictedAfterGracePeriod() throws TickOlderThanAllowedDurationException {
+        priceAggregationService.processTick(new Tick("IDL", 120.0, System.currentTimeMillis()));
+
+        sleepFor(1100);
+        priceAggregationService.processTick(new Tick("ACT", 120.0, System.currentTimeMillis()));
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        assertThat(priceAggregationService.getStatForInstrument("IDL").get().getCount()).isEqualTo(0L);
+        assertThat(priceAggregationService.getCandlesForInstrument("IDL", 1000)).isNotEmpty();
+
+        sleepFor(600);
+        priceAggregationService.processTick(new Tick("ACT", 121.0, System.currentTimeMillis()));
+        int liveInstrumentCount = priceAggregationService.getLiveInstrumentCount();
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        assertThat(priceAggregationService.getStatForInstrument("IDL")).isEmpty();
+        assertThat(priceAggregationService.getCandlesForInstrument("IDL", 1000)).isEmpty();
+        assertThat(priceAggregationService.getStatForInstrument("ACT").get().getCount()).isEqualTo(2L);
+        assertThat(priceAggregationService.getStoredTickCount()).isEqualTo(2L);
+        assertThat(priceAggregationService.getLiveInstrumentCount()).isLessThan(liveInstrumentCount);
+
+        priceAggregationService.processTick(new Tick("IDL", 130.0, System.currentTimeMillis()));
+        assertThat(priceAggregationService.getStatForInstrument("IDL").get().getCount()).isEqualTo(1L);
+    }
+
+
     @Test
     public void test_PriceAggregation_WhenTicksAreAddedContinuously() throws IOException {
         File file = ResourceUtils.getFile("classpath:ticks.csv");
@@ -0,0 +1,133 @@
+package com.idx.tick.service;
+
+import com.idx.tick.exception.TickOlderThanAllowedDurationException;
+import com.idx.tick.model.Tick;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {PriceAggregationService.class, TickArchive.class})
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "tick.archive.enabled=true",
+        "tick.archive.directory=target/tick-archive-test",
+        "tick.archive.block.size=3"})
+public class TickArchiveTests {
+
+    @Autowired
+    private PriceAggregationService priceAggregationService;
+
+    @Autowired
+    private TickArchive tickArchive;
+
+
+    @Before
+    public void clearData() throws IOException {
+        priceAggregationService.clearTicks();
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        tickArchive.close();
+        FileSystemUtils.deleteRecursively(Paths.get("target/tick-archive-test"));
+        Files.createDirectories(Paths.get("target/tick-archive-test"));
+    }
+
+
+    @Test
+    public void test_ExpiredTicks_AreArchivedAndScannable() throws TickOlderThanAllowedDurationException, IOException {
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 7; i++) {
+            priceAggregationService.processTick(new Tick("IBM/N", 100.0 + i, timestamp + i));
+        }
+        priceAggregationService.processTick(new Tick("MSFT.O", 300.0, timestamp));
+
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        assertThat(tickArchive.scan("IBM/N", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> { })).isEqualTo(0L);
+
+        sleepFor(1100);
+        priceAggregationService.regularPriceAggregationCleanUpJob();
+        assertThat(priceAggregationService.getStoredTickCount()).isEqualTo(0L);
+
+        List<Double> prices = new ArrayList<>();
+        assertThat(tickArchive.scan("IBM/N", timestamp + 2, timestamp + 5, (ts, price) -> prices.add(price))).isEqualTo(4L);
+        assertThat(prices).containsExactly(102.0, 103.0, 104.0, 105.0);
+        assertThat(tickArchive.scan("IBM/N", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> { })).isEqualTo(7L);
+        assertThat(tickArchive.scan("MSFT.O", timestamp, timestamp, (ts, price) -> assertThat(price).isEqualTo(300.0))).isEqualTo(1L);
+        assertThat(tickArchive.scan("UNKNOWN", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> { })).isEqualTo(0L);
+    }
+
+
+    @Test
+    public void test_TornTailBlock_IsSkippedOnScanAndTruncatedBeforeAppending() throws IOException {
+        Path file = Paths.get("target/tick-archive-test/ABC.ticks");
+        tickArchive.append("ABC", 10.0, 1000);
+        tickArchive.append("ABC", 11.0, 1001);
+        tickArchive.append("ABC", 12.0, 1002);
+        tickArchive.flush();
+        long size = Files.size(file);
+
+        // Header of a block whose columns were never written
+        byte[] block = TickBlockCodec.encode(new long[]{1003, 1004}, new double[]{13.0, 14.0}, 0, 2);
+        Files.write(file, Arrays.copyOf(block, TickBlockCodec.HEADER_SIZE + 1), StandardOpenOption.APPEND);
+        assertThat(tickArchive.scan("ABC", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> { })).isEqualTo(3L);
+
+        tickArchive.initArchiveDirectory();
+        assertThat(Files.size(file)).isEqualTo(size);
+
+        tickArchive.append("ABC", 15.0, 1005);
+        tickArchive.close();
+        assertThat(Files.size(file)).isGreaterThan(size);
+        List<Double> prices = new ArrayList<>();
+        assertThat(tickArchive.scan("ABC", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> prices.add(price))).isEqualTo(4L);
+        assertThat(prices).containsExactly(10.0, 11.0, 12.0, 15.0);
+    }
+
+
+    @Test
+    public void test_PartialBlock_StaysBufferedUntilFullOrTooOld() throws IOException {
+        Path file = Paths.get("target/tick-archive-test/XYZ.ticks");
+        tickArchive.append("XYZ", 10.0, 1000);
+        tickArchive.append("XYZ", 11.0, 1001);
+        tickArchive.flush();
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(tickArchive.scan("XYZ", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> { })).isEqualTo(2L);
+
+        tickArchive.append("XYZ", 12.0, 1002);
+        tickArchive.append("XYZ", 13.0, 1003);
+        tickArchive.flush();
+        long size = Files.size(file);
+        assertThat(tickArchive.scan("XYZ", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> { })).isEqualTo(4L);
+
+        ReflectionTestUtils.setField(tickArchive, "maxPendingAgeInMs", 0L);
+        try {
+            tickArchive.flush();
+        } finally {
+            ReflectionTestUtils.setField(tickArchive, "maxPendingAgeInMs", 60000L);
+        }
+        assertThat(Files.size(file)).isGreaterThan(size);
+        List<Double> prices = new ArrayList<>();
+        assertThat(tickArchive.scan("XYZ", Long.MIN_VALUE, Long.MAX_VALUE, (ts, price) -> prices.add(price))).isEqualTo(4L);
+        assertThat(prices).containsExactly(10.0, 11.0, 12.0, 13.0);
+    }
+
+
+    private void sleepFor(long ms){
+        try { Thread.sleep(ms);   } catch (InterruptedException e) {   e.printStackTrace(); }
+    }
+}
@@ -0,0 +1,68 @@
+package com.idx.tick.service;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TickBlockCodecTests {
+
+    @Test
+    public void test_Decode_RestoresEncodedTicksExactly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = 5000;
+        long[] timestamps = new long[count];
+        double[] prices = new double[count];
+        long timestamp = 1_600_000_000_000L;
+        double price = 143.82;
+        for (int i = 0; i < count; i++) {
+            // Mostly increasing timestamps with repeats and out of order ones, repeated and jumping prices
+            timestamp += random.nextInt(-5, 50);
+            if (random.nextInt(3) > 0) price = random.nextInt(4) == 0 ? random.nextDouble() * 1e6 : price + random.nextInt(-100, 100) / 100.0;
+            timestamps[i] = timestamp;
+            prices[i] = price;
+        }
+        prices[10] = -0.0;
+        prices[11] = Double.MAX_VALUE;
+        prices[12] = Double.MIN_VALUE;
+
+        ByteBuffer block = ByteBuffer.wrap(TickBlockCodec.encode(timestamps, prices, 0, count));
+        assertThat(TickBlockCodec.blockLength(block, 0)).isEqualTo(block.capacity());
+        assertThat(block.capacity()).isLessThan(count * (Long.BYTES + Double.BYTES));
+
+        List<double[]> decoded = new ArrayList<>();
+        long matched = TickBlockCodec.decode(block, 0, Long.MIN_VALUE, Long.MAX_VALUE, (ts, p) -> decoded.add(new double[] {ts, p}));
+        assertThat(matched).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            assertThat((long) decoded.get(i)[0]).isEqualTo(timestamps[i]);
+            assertThat(Double.doubleToRawLongBits(decoded.get(i)[1])).isEqualTo(Double.doubleToRawLongBits(prices[i]));
+        }
+    }
+
+
+    @Test
+    public void test_Decode_FeedsOnlyTicksOfTheTimeRange() {
+        long[] timestamps = {1000, 1010, 1020, 1030, 1040};
+        double[] prices = {1.0, 2.0, 3.0, 4.0, 5.0};
+        ByteBuffer block = ByteBuffer.wrap(TickBlockCodec.encode(timestamps, prices, 1, 4));
+
+        assertThat(TickBlockCodec.minTimestamp(block, 0)).isEqualTo(1010L);
+        assertThat(TickBlockCodec.maxTimestamp(block, 0)).isEqualTo(1040L);
+
+        List<Double> decodedPrices = new ArrayList<>();
+        assertThat(TickBlockCodec.decode(block, 0, 1015, 1030, (ts, p) -> decodedPrices.add(p))).isEqualTo(2L);
+        assertThat(decodedPrices).containsExactly(3.0, 4.0);
+    }
+
+
+    @Test
+    public void test_BlockLength_LeavesOutIncompleteBlock() {
+        byte[] encoded = TickBlockCodec.encode(new long[] {1000, 1010}, new double[] {1.0, 2.0}, 0, 2);
+        assertThat(TickBlockCodec.blockLength(ByteBuffer.wrap(encoded, 0, encoded.length - 1).slice(), 0)).isEqualTo(-1L);
+        assertThat(TickBlockCodec.blockLength(ByteBuffer.wrap(encoded, 0, 4).slice(), 0)).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,54 @@
+package com.idx.tick.service;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TickDeduplicationFilterTests {
+
+    private static final long NOW = 1_000_000L;
+
+    private final TickDeduplicationFilter filter = new TickDeduplicationFilter(1000, 4, 10000, 0.0001);
+
+
+    @Test
+    public void test_IsDuplicate_OnlyForSameInstrumentPriceAndTimestamp() {
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW - 10, NOW)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW - 10, NOW)).isTrue();
+
+        assertThat(filter.isDuplicate("XYZ", 120.0, NOW - 10, NOW)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.5, NOW - 10, NOW)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW - 11, NOW)).isFalse();
+    }
+
+
+    @Test
+    public void test_IsDuplicate_FalsePositivesStayNearConfiguredRate() {
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.isDuplicate("I" + (i % 100), i / 100.0, NOW - (i % 1000), NOW)) falsePositives++;
+        }
+        assertThat(falsePositives).isLessThan(10);
+    }
+
+
+    @Test
+    public void test_IsDuplicate_ForgetsTicksOnceTheirPartitionIsRecycled() {
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW, NOW)).isFalse();
+
+        // Partitions of 250ms in a ring of 5, the slot of the tick is taken over 1250ms later
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW + 1250, NOW + 1250)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW, NOW + 1250)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW + 1250, NOW + 1250)).isTrue();
+    }
+
+
+    @Test
+    public void test_IsDuplicate_IgnoresTicksFarInTheFuture() {
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW + 5000, NOW)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW + 5000, NOW)).isFalse();
+        // Did not recycle the partition of current ticks
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW, NOW)).isFalse();
+        assertThat(filter.isDuplicate("ABC", 120.0, NOW, NOW)).isTrue();
+    }
+}